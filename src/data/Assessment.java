@@ -1,42 +1,106 @@
 package data;
-import java.util.ArrayList;
+
+import java.util.Collection;
 
 /**
  * Contains information about a particular assessment.
  * @author Darren Middleton, Dovydas Rupsys
  */
 public class Assessment {
-	private ArrayList<Result> _results;				//Declares a new object list "_results"	
-	private String _module;							//Stores the module code.
-	private String _assessment;						//Stores the assessment number.
-	
+	private ResultStore _results;					//Stores the results of this assessment in columns
+	private int _module;							//Stores the dictionary code of the module.
+	private int _assessment;						//Stores the dictionary code of the assessment number.
+	private int _name;								//Stores the dictionary code of the module and assessment names combined.
+
 	/**
 	 * Constructs the assessment object.
 	 * @param module Code of the specific module.
 	 * @param assessment Code of the specific assessment.
 	 */
 	public Assessment(String module, String assessment){
-		_module = module;
-		_assessment = assessment;
-		_results = new ArrayList<Result>();
+		_module = ResultStore.MODULES.encode(module);
+		_assessment = ResultStore.ASSESSMENTS.encode(assessment);
+		_name = ResultStore.ASSESSMENT_NAMES.encode(module + " " + assessment);
+		_results = new ResultStore();
 	}
 
+	/**
+	 * Checks if a result for the same candidate was already added to this assessment.
+	 * @param result Result to be checked.
+	 * @return true if the result was found, false if it was not.
+	 */
 	public boolean containsResult(Result result){
-		return _results.contains(result);
+		return _results.indexOf(result.getCandidateKey()) != -1;
 	}
-	
+
 	/**
-	 * Adds a result to a list of results.
+	 * Adds a copy of a result to the results of this assessment.
 	 * @param result Result to be added.
 	 */
 	public void addResult(Result result){
-		_results.add(result);
+		_results.add(result.getCandidateKey(), result.getCandidateName(), result.getMarkValue(), result.getMark(),
+				ResultStore.GRADES.encode(result.getGrade()));
+	}
+
+	/**
+	 * Adds a result unless there already is a result for the same candidate.
+	 * @param candidateKey Candidate key, the student number if the result was de-anonymised.
+	 * @param candidateName Name of the candidate.
+	 * @param mark Parsed mark.
+	 * @param markText Mark as it appears in the file.
+	 * @param grade Grade code from ResultStore.GRADES.
+	 * @return true if the result was added.
+	 */
+	public boolean addResult(String candidateKey, String candidateName, float mark, String markText, int grade){
+		return _results.add(candidateKey, candidateName, mark, markText, grade);
+	}
+
+	/**
+	 * Adds a result or replaces the result of the same candidate if there already is one.
+	 * @param candidateKey Candidate key, the student number if the result was de-anonymised.
+	 * @param candidateName Name of the candidate.
+	 * @param mark Parsed mark.
+	 * @param markText Mark as it appears in the file.
+	 * @param grade Grade code from ResultStore.GRADES.
+	 */
+	public void updateResult(String candidateKey, String candidateName, float mark, String markText, int grade){
+		int row = _results.indexOf(candidateKey);
+
+		if (row == -1)
+			_results.add(candidateKey, candidateName, mark, markText, grade);
+		else
+			_results.set(row, candidateName, mark, markText, grade);
+	}
+
+	/**
+	 * Removes the results of several candidates.
+	 * @param candidateKeys Keys of the candidates whose results are removed.
+	 * @return Number of results removed.
+	 */
+	public int removeResults(Collection<String> candidateKeys){
+		return _results.removeAll(candidateKeys);
+	}
+
+	/**
+	 * Gets the module code of this assessment.
+	 * @return Module code.
+	 */
+	public String getModuleName(){
+		return ResultStore.MODULES.decode(_module);
 	}
-	
+
 	public String getAssessmentName(){
-		return _assessment;
+		return ResultStore.ASSESSMENTS.decode(_assessment);
 	}
-	
+
+	/**
+	 * Gets the dictionary code of the combined module and assessment name, as used by student results.
+	 * @return Code of the name.
+	 */
+	public int getNameCode(){
+		return _name;
+	}
+
 	/**
 	 * Gets the number of results in the list.
 	 * @return The length of the results list.
@@ -44,16 +108,16 @@ public class Assessment {
 	public int getResultsSize(){
 		return _results.size();
 	}
-	
+
 	/**
-	 * Retrieves specified result. 
+	 * Retrieves specified result.
 	 * @param Index The number in the results list to be selected.
 	 * @return The selected result.
 	 */
 	public Result getResult(int index){
-		return _results.get(index);
+		return new Result(_results, index);
 	}
-	
+
 	/**
 	 * Gets the column names in a form of array.
 	 * @return Array of string with column names.
@@ -61,30 +125,29 @@ public class Assessment {
 	public String[] columnNamesArray(){
 		return new String[] { "Student Name", "Student Number", "Mark", "Grade" };
 	}
-	
+
 	/**
 	 * Converts results into an array of rows and columns.
 	 * @return an array of rows and columns with results data.
 	 */
 	public String[][] dataArray(){
 		String[][] data = new String[_results.size()][];
-		
+
 		for (int i = 0; i < _results.size(); i++) {
-			Result r = _results.get(i);
-			data[i] = new String[] { r.getCandidateName(), r.getCandidateKey(), r.getMark(), r.getGrade() };
+			data[i] = new String[] { _results.getName(i), _results.getKey(i), _results.getMarkText(i), _results.getGrade(i) };
 		}
-		
+
 		return data;
 	}
-	
+
 	/**
 	 * Converts this assessment into a string representation.
 	 */
 	@Override
 	public String toString(){
-		return _module + " " + _assessment;
+		return ResultStore.ASSESSMENT_NAMES.decode(_name);
 	}
-	
+
 	/**
 	 * Checks if this assessment is equal to some other object.
 	 */
@@ -92,10 +155,18 @@ public class Assessment {
 	public boolean equals(Object obj) {
 		if (obj instanceof Assessment){
 			Assessment a = (Assessment)obj;
-			
-			return toString().equals(a.toString());
+
+			return _module == a._module && _assessment == a._assessment;
 		}
-		
+
 		return false;
 	}
+
+	/**
+	 * Creates a hash code from the module and assessment codes.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * _module + _assessment;
+	}
 }
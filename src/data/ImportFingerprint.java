@@ -0,0 +1,344 @@
+package data;
+
+import java.io.File;
+
+/**
+ * Fingerprints of the rows of an imported exam result file. A row is identified by a hash of its module, assessment and
+ * candidate key and described by a hash of all of its columns, so a later version of the same file can be compared with this
+ * one row by row. Rows are kept in an open addressing hash table together with the assessment and the candidate key the row
+ * was stored under.
+ * @author Dovydas Rupsys
+ */
+public class ImportFingerprint {
+	static final long FNV_OFFSET = 0xcbf29ce484222325L;		//Starting value of the 64 bit FNV-1a hash
+	private static final long FNV_PRIME = 0x100000001b3L;			//Multiplier of the 64 bit FNV-1a hash
+	private static final int SEPARATOR = 0x10000;					//Hashed between columns, cannot be confused with a character
+	private static final int INITIAL_CAPACITY = 32;					//Number of slots of an empty table
+
+	private String _path;											//Absolute path of the imported file
+	private long _length;											//Length of the file when it was imported
+	private long _lastModified;										//Modification time of the file when it was imported
+	private long[] _ids;											//Row identifiers, 0 marks an empty slot
+	private long[] _hashes;											//Hashes of the row contents
+	private Assessment[] _assessments;								//Assessments the rows were added to
+	private String[] _keys;											//Candidate keys the rows were stored under
+	private int _size;												//Number of rows
+
+	/**
+	 * Constructs an empty set of fingerprints.
+	 */
+	public ImportFingerprint() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty set of fingerprints with room for a number of rows.
+	 * @param rows Expected number of rows.
+	 */
+	public ImportFingerprint(int rows) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < rows * 2)
+			capacity *= 2;
+
+		_ids = new long[capacity];
+		_hashes = new long[capacity];
+		_assessments = new Assessment[capacity];
+		_keys = new String[capacity];
+		_size = 0;
+	}
+
+	/**
+	 * Adds one column to a hash.
+	 * @param hash Hash of the previous columns.
+	 * @param value Column value.
+	 * @return Hash including the column.
+	 */
+	static long hash(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+
+		return (hash ^ SEPARATOR) * FNV_PRIME;
+	}
+
+	/**
+	 * Creates the identifier of a row from its module, assessment and candidate key.
+	 * @param schema Column layout of the file.
+	 * @param row Row of the file split into columns.
+	 * @return Identifier of the row, never 0.
+	 */
+	public static long rowId(ResultSchema schema, String[] row) {
+		long id = hash(hash(hash(FNV_OFFSET, schema.getModule(row)), schema.getAssessment(row)), schema.getCandidateKey(row));
+
+		return id == 0 ? 1 : id;
+	}
+
+	/**
+	 * Creates a hash of every column of a row.
+	 * @param row Row of the file split into columns.
+	 * @return Hash of the row contents.
+	 */
+	public static long rowHash(String[] row) {
+		long hash = FNV_OFFSET;
+
+		for (int i = 0; i < row.length; i++) {
+			hash = hash(hash, row[i]);
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Finds the slot where a row identifier is or should be stored.
+	 * @param id Row identifier.
+	 * @return Index of the slot.
+	 */
+	private int findSlot(long id) {
+		int mask = _ids.length - 1;
+		int slot = (int)(id ^ (id >>> 32)) & mask;
+
+		// linear probing until the identifier or an empty slot is found
+		while (_ids[slot] != 0 && _ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Doubles the table when it is half full.
+	 */
+	private void ensureCapacity() {
+		if (_size * 2 < _ids.length)
+			return;
+
+		long[] ids = _ids;
+		long[] hashes = _hashes;
+		Assessment[] assessments = _assessments;
+		String[] keys = _keys;
+
+		_ids = new long[ids.length * 2];
+		_hashes = new long[ids.length * 2];
+		_assessments = new Assessment[ids.length * 2];
+		_keys = new String[ids.length * 2];
+
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == 0)
+				continue;
+
+			int slot = findSlot(ids[i]);
+			_ids[slot] = ids[i];
+			_hashes[slot] = hashes[i];
+			_assessments[slot] = assessments[i];
+			_keys[slot] = keys[i];
+		}
+	}
+
+	/**
+	 * Adds the fingerprint of a row unless a row with the same identifier was already added.
+	 * @param id Row identifier.
+	 * @param hash Hash of the row contents.
+	 * @param assessment Assessment the row was added to.
+	 * @param key Candidate key the row was stored under.
+	 * @return true if the row was added.
+	 */
+	public boolean add(long id, long hash, Assessment assessment, String key) {
+		int slot = findSlot(id);
+		if (_ids[slot] != 0)
+			return false;
+
+		put(id, hash, assessment, key);
+		return true;
+	}
+
+	/**
+	 * Adds or replaces the fingerprint of a row.
+	 * @param id Row identifier.
+	 * @param hash Hash of the row contents.
+	 * @param assessment Assessment the row was added to.
+	 * @param key Candidate key the row was stored under.
+	 */
+	public void put(long id, long hash, Assessment assessment, String key) {
+		ensureCapacity();
+
+		int slot = findSlot(id);
+		if (_ids[slot] == 0)
+			++_size;
+
+		_ids[slot] = id;
+		_hashes[slot] = hash;
+		_assessments[slot] = assessment;
+		_keys[slot] = key;
+	}
+
+	/**
+	 * Finds the slot of a row.
+	 * @param id Row identifier.
+	 * @return Slot of the row or -1 if there is no such row.
+	 */
+	int find(long id) {
+		int slot = findSlot(id);
+
+		return _ids[slot] == 0 ? -1 : slot;
+	}
+
+	/**
+	 * Checks if any row was added to an assessment.
+	 * @param assessment Assessment to look for.
+	 * @return true if at least one row refers to the assessment.
+	 */
+	public boolean references(Assessment assessment) {
+		for (int slot = 0; slot < _ids.length; slot++) {
+			if (_assessments[slot] == assessment && _ids[slot] != 0)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Points rows that were added to one assessment to another one, used when the results were moved to an existing assessment.
+	 * @param from Assessment the rows were added to.
+	 * @param to Assessment that now holds the results.
+	 */
+	public void replaceAssessment(Assessment from, Assessment to) {
+		for (int slot = 0; slot < _ids.length; slot++) {
+			if (_assessments[slot] == from)
+				_assessments[slot] = to;
+		}
+	}
+
+	/**
+	 * Gets the number of slots, rows are read by going through every slot that is in use.
+	 * @return Number of slots.
+	 */
+	int getCapacity() {
+		return _ids.length;
+	}
+
+	/**
+	 * Gets the row identifier in a slot.
+	 * @param slot Index of the slot.
+	 * @return Row identifier or 0 if the slot is empty.
+	 */
+	long getId(int slot) {
+		return _ids[slot];
+	}
+
+	/**
+	 * Gets the hash of the row contents in a slot.
+	 * @param slot Index of the slot.
+	 * @return Hash of the row.
+	 */
+	long getHash(int slot) {
+		return _hashes[slot];
+	}
+
+	/**
+	 * Gets the assessment the row in a slot was added to.
+	 * @param slot Index of the slot.
+	 * @return Assessment of the row.
+	 */
+	Assessment getAssessment(int slot) {
+		return _assessments[slot];
+	}
+
+	/**
+	 * Gets the candidate key the row in a slot was stored under.
+	 * @param slot Index of the slot.
+	 * @return Candidate key.
+	 */
+	String getKey(int slot) {
+		return _keys[slot];
+	}
+
+	/**
+	 * Gets the number of rows.
+	 * @return Number of fingerprinted rows.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Remembers which file and which version of it the rows come from.
+	 * @param file Imported file.
+	 */
+	public void setSource(File file) {
+		setSource(file.getAbsolutePath(), file.length(), file.lastModified());
+	}
+
+	/**
+	 * Remembers which file and which version of it the rows come from.
+	 * @param path Absolute path of the file.
+	 * @param length Length of the file.
+	 * @param lastModified Modification time of the file.
+	 */
+	void setSource(String path, long length, long lastModified) {
+		_path = path;
+		_length = length;
+		_lastModified = lastModified;
+	}
+
+	/**
+	 * Checks if a file still has the same length and modification time as when it was imported.
+	 * @param file File to be checked.
+	 * @return true if the file was not changed since it was imported.
+	 */
+	public boolean isUnchanged(File file) {
+		return file.length() == _length && file.lastModified() == _lastModified;
+	}
+
+	/**
+	 * Checks if a result was stored under a candidate key that could not be de-anonymised at the time but belongs to a student
+	 * now, for example because anonymous marking codes were loaded since the import.
+	 * @param key Candidate key the result was stored under.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @return true if the result should be stored under the student's number instead.
+	 */
+	public static boolean isNewlyIdentified(String key, StudentDirectory directory) {
+		if (key == null)
+			return false;
+
+		Student student = directory.deAnonymise(key);
+		return student != null && !student.getNumber().equals(key);
+	}
+
+	/**
+	 * Checks if any result of the import was stored under a candidate key that belongs to a student now.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @return true if importing the file again would de-anonymise some of its results.
+	 */
+	public boolean hasNewlyIdentified(StudentDirectory directory) {
+		for (int slot = 0; slot < _ids.length; slot++) {
+			if (_ids[slot] != 0 && isNewlyIdentified(_keys[slot], directory))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Gets the path of the imported file.
+	 * @return Absolute path.
+	 */
+	public String getPath() {
+		return _path;
+	}
+
+	/**
+	 * Gets the length of the file when it was imported.
+	 * @return Length in bytes.
+	 */
+	long getLength() {
+		return _length;
+	}
+
+	/**
+	 * Gets the modification time of the file when it was imported.
+	 * @return Modification time.
+	 */
+	long getLastModified() {
+		return _lastModified;
+	}
+}
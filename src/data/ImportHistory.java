@@ -0,0 +1,71 @@
+package data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Remembers the row fingerprints of every exam result file that was imported, so that a new version of a file only has to
+ * apply the rows that changed.
+ * @author Dovydas Rupsys
+ */
+public class ImportHistory {
+	private LinkedHashMap<String, ImportFingerprint> _files;		//Fingerprints by absolute path of the file
+
+	/**
+	 * Constructs an empty history.
+	 */
+	public ImportHistory() {
+		_files = new LinkedHashMap<String, ImportFingerprint>();
+	}
+
+	/**
+	 * Finds the fingerprints of the last import of a file.
+	 * @param file Exam result file.
+	 * @return Fingerprints or null if the file was not imported before.
+	 */
+	public ImportFingerprint find(File file) {
+		return _files.get(file.getAbsolutePath());
+	}
+
+	/**
+	 * Records the fingerprints of a file that was just imported, replacing those of the previous import.
+	 * @param file Imported file.
+	 * @param fingerprint Fingerprints of the rows of the file.
+	 */
+	public void record(File file, ImportFingerprint fingerprint) {
+		fingerprint.setSource(file);
+		_files.put(fingerprint.getPath(), fingerprint);
+	}
+
+	/**
+	 * Adds fingerprints that already know their source file, used when a session is restored.
+	 * @param fingerprint Fingerprints of an imported file.
+	 */
+	void add(ImportFingerprint fingerprint) {
+		_files.put(fingerprint.getPath(), fingerprint);
+	}
+
+	/**
+	 * Forgets every file that added results to an assessment, used when the assessment is closed. The next import of such a
+	 * file is a full import.
+	 * @param assessment Assessment that was closed.
+	 */
+	public void forget(Assessment assessment) {
+		Iterator<ImportFingerprint> files = _files.values().iterator();
+
+		while (files.hasNext()) {
+			if (files.next().references(assessment))
+				files.remove();
+		}
+	}
+
+	/**
+	 * Gets the fingerprints of all imported files.
+	 * @return List of fingerprints in the order the files were first imported.
+	 */
+	public ArrayList<ImportFingerprint> getFingerprints() {
+		return new ArrayList<ImportFingerprint>(_files.values());
+	}
+}
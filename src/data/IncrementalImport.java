@@ -0,0 +1,301 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import utility.CsvReader;
+
+/**
+ * Imports a new version of an exam result file that was imported before. Every row is fingerprinted and compared with the
+ * fingerprints of the previous import, and only rows that were added, changed or removed are applied to the assessments and
+ * students. Comparing does not touch any shared data, so it can run in the background, applying the differences is quick.
+ * @author Dovydas Rupsys
+ */
+public class IncrementalImport {
+	private ResultSchema _schema;									//Column layout of the file
+	private ImportFingerprint _previous;							//Fingerprints of the previous import
+	private ImportFingerprint _next;								//Fingerprints of this import
+	private StudentDirectory _directory;							//Directory used to find keys that can be de-anonymised now
+	private ArrayList<String[]> _rows;								//Rows that were added or changed
+	private ArrayList<Long> _rowIds;								//Identifiers of the added or changed rows
+	private ArrayList<Assessment> _removedAssessments;				//Assessments of the removed rows
+	private ArrayList<String> _removedKeys;							//Candidate keys of the removed rows
+	private int _added;												//Number of rows that are new in this version
+	private int _changed;											//Number of rows that have different values in this version
+	private int _unchanged;											//Number of rows that are the same as in the previous version
+	private ArrayList<Assessment> _newAssessments;					//Assessments created while applying the differences
+	private LinkedHashSet<Assessment> _updatedAssessments;			//Existing assessments whose results changed
+
+	/**
+	 * Constructs an import that compares rows with the previous import of the file.
+	 * @param header Header row of the file.
+	 * @param previous Fingerprints of the previous import.
+	 * @param directory Directory used to find keys that can be de-anonymised now.
+	 */
+	private IncrementalImport(String[] header, ImportFingerprint previous, StudentDirectory directory) {
+		_schema = new ResultSchema(header);
+		_previous = previous;
+		_directory = directory;
+		_next = new ImportFingerprint(previous.size());
+		_rows = new ArrayList<String[]>();
+		_rowIds = new ArrayList<Long>();
+		_removedAssessments = new ArrayList<Assessment>();
+		_removedKeys = new ArrayList<String>();
+		_newAssessments = new ArrayList<Assessment>();
+		_updatedAssessments = new LinkedHashSet<Assessment>();
+	}
+
+	/**
+	 * Reads a new version of a file and finds the rows that differ from the previous import.
+	 * @param reader Csv reader over the new version of the file.
+	 * @param previous Fingerprints of the previous import of the file.
+	 * @param directory Directory used to find rows whose candidate key can be de-anonymised now, it is only read.
+	 * @param progress Progress that is updated while rows are compared and checked for cancellation.
+	 * @return The differences or null if the file was empty.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static IncrementalImport compare(CsvReader reader, ImportFingerprint previous, StudentDirectory directory, LoadProgress progress)
+			throws IOException {
+		String[] header = reader.readRow();
+		if (header == null)
+			return null;
+
+		IncrementalImport changes = new IncrementalImport(header, previous, directory);
+		long reportedChars = 0;
+		int rows = 0;
+
+		String[] line;
+		while ((line = reader.readRow()) != null) {
+			changes.compareRow(line);
+
+			if (++rows == LoadProgress.UPDATE_INTERVAL) {
+				progress.addProcessed(reader.getCharactersRead() - reportedChars, rows);
+				reportedChars = reader.getCharactersRead();
+				rows = 0;
+
+				if (progress.isCancelled())
+					return changes;
+			}
+		}
+
+		progress.addProcessed(reader.getCharactersRead() - reportedChars, rows);
+		changes.findRemovedRows();
+
+		return changes;
+	}
+
+	/**
+	 * Compares a row with the row that had the same identifier in the previous import.
+	 * @param line Row of the file split into columns.
+	 */
+	private void compareRow(String[] line) {
+		long id = ImportFingerprint.rowId(_schema, line);
+		long hash = ImportFingerprint.rowHash(line);
+
+		// only the first row with an identifier counts, the same as when the file is loaded in full
+		if (_next.find(id) != -1)
+			return;
+
+		int slot = _previous.find(id);
+
+		// an unchanged row is applied again when its key was not a student then but is now, so its result is de-anonymised
+		if (slot != -1 && _previous.getHash(slot) == hash && !ImportFingerprint.isNewlyIdentified(_previous.getKey(slot), _directory)) {
+			// unchanged rows keep the result that was stored for them
+			_next.put(id, hash, _previous.getAssessment(slot), _previous.getKey(slot));
+			++_unchanged;
+			return;
+		}
+
+		if (slot == -1)
+			++_added;
+		else
+			++_changed;
+
+		// the result of the row is not known until it is applied
+		_next.put(id, hash, null, null);
+		_rows.add(line);
+		_rowIds.add(id);
+	}
+
+	/**
+	 * Finds rows of the previous import that are not in this version of the file.
+	 */
+	private void findRemovedRows() {
+		for (int slot = 0; slot < _previous.getCapacity(); slot++) {
+			long id = _previous.getId(slot);
+
+			if (id != 0 && _next.find(id) == -1 && _previous.getAssessment(slot) != null) {
+				_removedAssessments.add(_previous.getAssessment(slot));
+				_removedKeys.add(_previous.getKey(slot));
+			}
+		}
+	}
+
+	/**
+	 * Applies the differences to the assessments and students.
+	 * @param directory Directory used to de-anonymise candidate keys and to find students whose results changed.
+	 * @param assessments Assessments that are currently loaded, new assessments are not added to this list.
+	 */
+	public void apply(StudentDirectory directory, ArrayList<Assessment> assessments) {
+		HashMap<String, Assessment> assessmentMap = new HashMap<String, Assessment>();
+		for (int i = 0; i < assessments.size(); i++) {
+			assessmentMap.put(assessments.get(i).toString(), assessments.get(i));
+		}
+
+		// removed rows are grouped by assessment, so every assessment is compacted once
+		LinkedHashMap<Assessment, ArrayList<String>> removed = new LinkedHashMap<Assessment, ArrayList<String>>();
+		for (int i = 0; i < _removedKeys.size(); i++) {
+			Assessment assessment = _removedAssessments.get(i);
+			ArrayList<String> keys = removed.get(assessment);
+
+			if (keys == null) {
+				keys = new ArrayList<String>();
+				removed.put(assessment, keys);
+			}
+
+			keys.add(_removedKeys.get(i));
+		}
+
+		for (Assessment assessment : removed.keySet()) {
+			removeResults(directory, assessment, removed.get(assessment));
+		}
+
+		// added and changed rows are processed in file order
+		for (int i = 0; i < _rows.size(); i++) {
+			applyRow(directory, assessmentMap, _rows.get(i), _rowIds.get(i));
+		}
+
+		_rows.clear();
+		_rowIds.clear();
+	}
+
+	/**
+	 * Removes results from an assessment and from the students they belong to.
+	 * @param directory Directory used to find the students.
+	 * @param assessment Assessment the results were added to.
+	 * @param keys Candidate keys of the results.
+	 */
+	private void removeResults(StudentDirectory directory, Assessment assessment, List<String> keys) {
+		if (assessment.removeResults(keys) > 0 && !_newAssessments.contains(assessment))
+			_updatedAssessments.add(assessment);
+
+		for (int i = 0; i < keys.size(); i++) {
+			Student student = directory.findByNumber(keys.get(i));
+			if (student != null)
+				student.removeResults(assessment);
+		}
+	}
+
+	/**
+	 * Applies a row that was added or changed.
+	 * @param directory Directory used to de-anonymise the candidate key.
+	 * @param assessmentMap Loaded assessments by name.
+	 * @param line Row of the file split into columns.
+	 * @param id Identifier of the row.
+	 */
+	private void applyRow(StudentDirectory directory, HashMap<String, Assessment> assessmentMap, String[] line, long id) {
+		String module = _schema.getModule(line);
+		String ass = _schema.getAssessment(line);
+		String code = _schema.getCandidateKey(line);
+		String mark = _schema.getMark(line);
+		String name = "N/A";
+		float markValue = ResultStore.parseMark(mark);
+		int gradeCode = ResultStore.GRADES.encode(_schema.getGrade(line));
+
+		// finds the assessment among the loaded ones or creates it
+		Assessment assessment = assessmentMap.get(module + " " + ass);
+		if (assessment == null) {
+			assessment = new Assessment(module, ass);
+			assessmentMap.put(assessment.toString(), assessment);
+			_newAssessments.add(assessment);
+		}
+
+		Student student = directory.deAnonymise(code);
+		if (student != null) {
+			code = student.getNumber();
+			name = student.getName();
+		}
+
+		// a changed row that was stored under a different assessment or key loses its old result
+		int slot = _previous.find(id);
+		if (slot != -1) {
+			Assessment oldAssessment = _previous.getAssessment(slot);
+			String oldKey = _previous.getKey(slot);
+
+			if (oldAssessment != null && (oldAssessment != assessment || !oldKey.equals(code)))
+				removeResults(directory, oldAssessment, Collections.singletonList(oldKey));
+		}
+
+		assessment.updateResult(code, name, markValue, mark, gradeCode);
+		if (!_newAssessments.contains(assessment))
+			_updatedAssessments.add(assessment);
+
+		if (student != null) {
+			student.removeResults(assessment);
+			student.addResult(new StudentResult(assessment.getNameCode(), markValue, mark, gradeCode));
+		}
+
+		_next.put(id, _next.getHash(_next.find(id)), assessment, code);
+	}
+
+	/**
+	 * Gets the fingerprints of this version of the file, they replace the previous ones once the differences were applied.
+	 * @return Row fingerprints.
+	 */
+	public ImportFingerprint getFingerprint() {
+		return _next;
+	}
+
+	/**
+	 * Gets the assessments that were created while applying the differences.
+	 * @return List of new assessments.
+	 */
+	public ArrayList<Assessment> getNewAssessments() {
+		return _newAssessments;
+	}
+
+	/**
+	 * Gets the loaded assessments whose results changed.
+	 * @return List of updated assessments.
+	 */
+	public ArrayList<Assessment> getUpdatedAssessments() {
+		return new ArrayList<Assessment>(_updatedAssessments);
+	}
+
+	/**
+	 * Gets the number of rows that are new in this version of the file.
+	 * @return Number of added rows.
+	 */
+	public int getAddedCount() {
+		return _added;
+	}
+
+	/**
+	 * Gets the number of rows whose values changed.
+	 * @return Number of changed rows.
+	 */
+	public int getChangedCount() {
+		return _changed;
+	}
+
+	/**
+	 * Gets the number of rows that are no longer in the file.
+	 * @return Number of removed rows.
+	 */
+	public int getRemovedCount() {
+		return _removedKeys.size();
+	}
+
+	/**
+	 * Gets the number of rows that did not change.
+	 * @return Number of unchanged rows.
+	 */
+	public int getUnchangedCount() {
+		return _unchanged;
+	}
+}
@@ -0,0 +1,101 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of loading a file. Loaders update it from background threads while the user interface reads it, and the
+ * user interface can use it to ask the loaders to stop.
+ * @author Dovydas Rupsys
+ */
+public class LoadProgress {
+	public static final int UPDATE_INTERVAL = 1024;				//Number of rows loaders process between progress updates
+
+	private long _totalBytes;									//Size of the file being loaded
+	private AtomicLong _bytesProcessed;							//Number of bytes processed so far
+	private AtomicLong _rowsProcessed;							//Number of rows processed so far
+	private volatile boolean _cancelled;						//true once the user asked to stop loading
+	private long _startTime;									//Time when loading started in milliseconds
+
+	/**
+	 * Constructs progress for a file of the specified size.
+	 * @param totalBytes Size of the file in bytes.
+	 */
+	public LoadProgress(long totalBytes) {
+		_totalBytes = totalBytes;
+		_bytesProcessed = new AtomicLong();
+		_rowsProcessed = new AtomicLong();
+		_cancelled = false;
+		_startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Records a part of the file that was processed.
+	 * @param bytes Number of bytes processed.
+	 * @param rows Number of rows processed.
+	 */
+	public void addProcessed(long bytes, long rows) {
+		_bytesProcessed.addAndGet(bytes);
+		_rowsProcessed.addAndGet(rows);
+	}
+
+	/**
+	 * Gets the number of rows processed so far.
+	 * @return Number of rows.
+	 */
+	public long getRowsProcessed() {
+		return _rowsProcessed.get();
+	}
+
+	/**
+	 * Gets the part of the file that was processed.
+	 * @return Percentage between 0 and 100.
+	 */
+	public int getPercentDone() {
+		if (_totalBytes <= 0)
+			return 0;
+
+		return (int)Math.min(100, _bytesProcessed.get() * 100 / _totalBytes);
+	}
+
+	/**
+	 * Gets the average number of rows processed per second.
+	 * @return Rows per second.
+	 */
+	public long getRowsPerSecond() {
+		long elapsed = System.currentTimeMillis() - _startTime;
+
+		if (elapsed <= 0)
+			return 0;
+
+		return _rowsProcessed.get() * 1000 / elapsed;
+	}
+
+	/**
+	 * Estimates the time left until the whole file is processed.
+	 * @return Seconds left or -1 if there is not enough data to make an estimate.
+	 */
+	public long getSecondsLeft() {
+		long elapsed = System.currentTimeMillis() - _startTime;
+		long bytes = _bytesProcessed.get();
+
+		if (elapsed <= 0 || bytes <= 0)
+			return -1;
+
+		return (_totalBytes - bytes) * elapsed / bytes / 1000;
+	}
+
+	/**
+	 * Asks the loaders to stop.
+	 */
+	public void cancel() {
+		_cancelled = true;
+	}
+
+	/**
+	 * Checks if the loaders were asked to stop.
+	 * @return true if loading was cancelled.
+	 */
+	public boolean isCancelled() {
+		return _cancelled;
+	}
+}
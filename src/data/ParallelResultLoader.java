@@ -0,0 +1,253 @@
+package data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import utility.CsvReader;
+
+/**
+ * Loads very large exam result files. The file is memory mapped, split into chunks that start and end on a line break and
+ * the chunks are parsed in parallel on a fork-join pool. Partial results are merged in file order, so the outcome is the same
+ * as processing the file row by row. Rows are expected not to contain line breaks inside of quoted fields.
+ * @author Dovydas Rupsys
+ */
+public class ParallelResultLoader {
+	public static final long MIN_FILE_SIZE = 64L * 1024 * 1024;		//Files smaller than this are faster to load sequentially
+	private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;		//Smallest chunk handed to a single task
+	private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;		//Largest region that can be mapped at once
+	private static final int SCAN_SIZE = 8 * 1024;						//Bytes read at a time when looking for line breaks
+
+	/**
+	 * Fork-join task that loads a range of chunks and merges their results in order.
+	 */
+	private static class ChunkTask extends RecursiveTask<ResultLoader> {
+		private static final long serialVersionUID = 1L;
+
+		private FileChannel _channel;							//Channel of the mapped file
+		private ResultLoader _prototype;						//Loader that holds the column layout
+		private LoadProgress _progress;							//Progress updated as chunks are processed
+		private long[] _bounds;									//Start offsets of chunks followed by the end of the last chunk
+		private int _first;										//First chunk loaded by this task
+		private int _last;										//Chunk after the last chunk loaded by this task
+
+		public ChunkTask(FileChannel channel, ResultLoader prototype, LoadProgress progress, long[] bounds, int first, int last) {
+			_channel = channel;
+			_prototype = prototype;
+			_progress = progress;
+			_bounds = bounds;
+			_first = first;
+			_last = last;
+		}
+
+		@Override
+		protected ResultLoader compute() {
+			// a single chunk is parsed directly
+			if (_last - _first == 1)
+				return loadChunk(_bounds[_first], _bounds[_last]);
+
+			// otherwise splits the range in half and merges the right half into the left one
+			int middle = (_first + _last) / 2;
+			ChunkTask left = new ChunkTask(_channel, _prototype, _progress, _bounds, _first, middle);
+			ChunkTask right = new ChunkTask(_channel, _prototype, _progress, _bounds, middle, _last);
+			right.fork();
+
+			ResultLoader loader = left.compute();
+			loader.merge(right.join());
+
+			return loader;
+		}
+
+		/**
+		 * Maps a chunk of the file and processes every row in it, unless loading is cancelled.
+		 * @param start Offset of the first byte of the chunk.
+		 * @param end Offset after the last byte of the chunk.
+		 * @return Loader with the results of this chunk.
+		 */
+		private ResultLoader loadChunk(long start, long end) {
+			ResultLoader loader = new ResultLoader(_prototype);
+
+			// chunks that were not started before loading was cancelled are skipped
+			if (_progress.isCancelled())
+				return loader;
+
+			try {
+				MappedByteBuffer buffer = _channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				CsvReader reader = new CsvReader(new InputStreamReader(new ByteBufferInputStream(buffer)));
+
+				int reportedPosition = 0;
+				int rows = 0;
+
+				String[] line;
+				while ((line = reader.readRow()) != null) {
+					loader.processRow(line);
+
+					if (++rows == LoadProgress.UPDATE_INTERVAL) {
+						_progress.addProcessed(buffer.position() - reportedPosition, rows);
+						reportedPosition = buffer.position();
+						rows = 0;
+
+						if (_progress.isCancelled())
+							break;
+					}
+				}
+
+				_progress.addProcessed(buffer.position() - reportedPosition, rows);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			return loader;
+		}
+	}
+
+	/**
+	 * Input stream that reads the remaining bytes of a buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private ByteBuffer _buffer;								//Buffer to be read
+
+		public ByteBufferInputStream(ByteBuffer buffer) {
+			_buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return _buffer.hasRemaining() ? (_buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (!_buffer.hasRemaining())
+				return -1;
+
+			length = Math.min(length, _buffer.remaining());
+			_buffer.get(bytes, offset, length);
+
+			return length;
+		}
+	}
+
+	/**
+	 * Finds the offset after the first line break at or after the specified position.
+	 * @param channel Channel of the file.
+	 * @param position Position where the search starts.
+	 * @param size Size of the file.
+	 * @return Offset of the first byte of the next line or the size of the file if there are no more line breaks.
+	 * @throws IOException
+	 */
+	private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+
+		while (position < size) {
+			scan.clear();
+			int read = channel.read(scan, position);
+			if (read <= 0)
+				break;
+
+			for (int i = 0; i < read; i++) {
+				if (scan.get(i) == '\n')
+					return position + i + 1;
+			}
+
+			position += read;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Reads the header row at the beginning of the file.
+	 * @param channel Channel of the file.
+	 * @param end Offset after the header row.
+	 * @return Header row split into columns or null if the file is empty.
+	 * @throws IOException
+	 */
+	private static String[] readHeader(FileChannel channel, long end) throws IOException {
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		CsvReader reader = new CsvReader(new InputStreamReader(new ByteBufferInputStream(buffer)));
+
+		return reader.readRow();
+	}
+
+	/**
+	 * Splits the part of the file after the header into chunks that end on line breaks.
+	 * @param channel Channel of the file.
+	 * @param start Offset of the first row after the header.
+	 * @param size Size of the file.
+	 * @return Start offsets of the chunks followed by the size of the file.
+	 * @throws IOException
+	 */
+	private static long[] splitIntoChunks(FileChannel channel, long start, long size) throws IOException {
+		// creates a few chunks per worker so that workers that finish early can help the others
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, (size - start) / (parallelism * 4L));
+		chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE - SCAN_SIZE);
+
+		ArrayList<Long> bounds = new ArrayList<Long>();
+		long position = start;
+		while (position < size) {
+			bounds.add(position);
+			position = nextLineStart(channel, position + chunkSize, size);
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Loads the exam result file using all available cores.
+	 * @param file File to be loaded.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @param progress Progress that is updated while chunks are processed and checked for cancellation.
+	 * @return Loader with all results of the file or null if the file is empty.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static ResultLoader load(File file, StudentDirectory directory, LoadProgress progress) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+
+			// reads the header, which is needed by every chunk to find the columns
+			long dataStart = nextLineStart(channel, 0, size);
+			String[] header = readHeader(channel, dataStart);
+			if (header == null)
+				return null;
+
+			ResultLoader prototype = new ResultLoader(directory, header);
+
+			// if there is nothing after the header then no results were loaded
+			if (dataStart >= size)
+				return prototype;
+
+			long[] bounds = splitIntoChunks(channel, dataStart, size);
+
+			try {
+				return ForkJoinPool.commonPool().invoke(new ChunkTask(channel, prototype, progress, bounds, 0, bounds.length - 1));
+			} catch (UncheckedIOException e) {
+				// unwraps read errors thrown inside of the tasks
+				Throwable cause = e;
+				while (cause != null && !(cause instanceof IOException))
+					cause = cause.getCause();
+
+				if (cause != null)
+					throw (IOException)cause;
+				throw e;
+			}
+		}
+	}
+}
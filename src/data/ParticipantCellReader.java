@@ -0,0 +1,294 @@
+package data;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the text of the participation cells (columns c3 to c6) of a Moodle participants table, either from the html of the
+ * table or from a whole saved page. The html is read once from start to end, so the time taken grows linearly with the size
+ * of the page, and tags are matched in a buffer that is reused for every tag, so only the text of the cells that are returned
+ * is allocated.
+ * @author Dovydas Rupsys
+ */
+public class ParticipantCellReader implements ParticipantCells {
+	private static final int BUFFER_SIZE = 8192;					//Number of characters read from the source at a time
+	private static final String TABLE_ID_VALUE = ParticipantTableWalker.TABLE_ID + "\"";	//Id of the participants table and the closing quote
+
+	private Reader _in;												//Source of the html
+	private char[] _buffer;											//Characters read from the source
+	private int _position;											//Next character of the buffer to be returned
+	private int _limit;												//Number of characters in the buffer
+	private StringBuilder _tag;										//Contents of the last tag, between < and >
+	private StringBuilder _text;									//Text of the cell being read
+	private boolean _tableOnly;										//true to only read cells of the participants table
+	private int _tableDepth;										//Number of open tables inside the participants table, -1 after it
+
+	/**
+	 * Constructs a reader over the html of a participants table.
+	 * @param in Source of the html, it is not closed by this reader.
+	 */
+	public ParticipantCellReader(Reader in) {
+		this(in, false);
+	}
+
+	/**
+	 * Constructs a reader over html.
+	 * @param in Source of the html, it is not closed by this reader.
+	 * @param tableOnly true if the html is a whole page and only the cells of the table with the participants id are read.
+	 */
+	public ParticipantCellReader(Reader in, boolean tableOnly) {
+		_in = in;
+		_buffer = new char[BUFFER_SIZE];
+		_tag = new StringBuilder();
+		_text = new StringBuilder();
+		_tableOnly = tableOnly;
+		_tableDepth = 0;
+	}
+
+	/**
+	 * Reads the next character of the html.
+	 * @return Character or -1 at the end of the html.
+	 * @throws IOException If the source could not be read.
+	 */
+	private int read() throws IOException {
+		if (_position == _limit) {
+			_limit = _in.read(_buffer, 0, _buffer.length);
+			_position = 0;
+
+			if (_limit <= 0) {
+				_limit = 0;
+				return -1;
+			}
+		}
+
+		return _buffer[_position++];
+	}
+
+	/**
+	 * Reads the text of the next participation cell with all tags inside it removed.
+	 * @return Text of the cell or null if there are no more cells.
+	 * @throws IOException If the source could not be read.
+	 */
+	@Override
+	public String nextCell() throws IOException {
+		int c;
+		while (_tableDepth != -1 && (c = read()) != -1) {
+			if (c != '<' || !readTag())
+				continue;
+
+			if (_tableOnly && !isInTable())
+				continue;
+
+			if (isParticipationCell())
+				return readCellText();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Follows the table tags of a page to find out if the tag that was just read is inside the participants table.
+	 * @return true if the tag is inside the table.
+	 */
+	private boolean isInTable() {
+		if (_tableDepth == 0) {
+			int id = findAttributeValue("id");
+			if (isTag("table") && id != -1 && matches(id, TABLE_ID_VALUE))
+				_tableDepth = 1;
+
+			return false;
+		}
+
+		if (isTag("table")) {
+			++_tableDepth;
+		}
+		else if (isTag("/table") && --_tableDepth == 0) {
+			// nothing after the participants table is read
+			_tableDepth = -1;
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads a tag up to its closing >, a > inside a quoted attribute does not close the tag. Comments are skipped.
+	 * @return true if a tag was read into the tag buffer, false for a comment or the end of the html.
+	 * @throws IOException If the source could not be read.
+	 */
+	private boolean readTag() throws IOException {
+		_tag.setLength(0);
+		char quote = 0;
+		int c;
+
+		while ((c = read()) != -1) {
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			}
+			else if (c == '"' || c == '\'') {
+				quote = (char)c;
+			}
+			else if (c == '>') {
+				return true;
+			}
+
+			_tag.append((char)c);
+
+			// a comment can contain anything, it only ends with -->
+			if (_tag.length() == 3 && _tag.charAt(0) == '!' && _tag.charAt(1) == '-' && _tag.charAt(2) == '-') {
+				skipComment();
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Skips the rest of a comment, up to and including -->.
+	 * @throws IOException If the source could not be read.
+	 */
+	private void skipComment() throws IOException {
+		int dashes = 0;
+		int c;
+
+		while ((c = read()) != -1) {
+			if (c == '>' && dashes >= 2)
+				return;
+
+			dashes = c == '-' ? dashes + 1 : 0;
+		}
+	}
+
+	/**
+	 * Reads the text up to the closing td tag, leaving out the tags inside the cell. Cells of tables nested inside the cell
+	 * are part of its text.
+	 * @return Text of the cell.
+	 * @throws IOException If the source could not be read.
+	 */
+	private String readCellText() throws IOException {
+		_text.setLength(0);
+		int nested = 0;
+		int c;
+
+		while ((c = read()) != -1) {
+			if (c != '<') {
+				_text.append((char)c);
+				continue;
+			}
+
+			if (!readTag())
+				continue;
+
+			if (isTag("td"))
+				++nested;
+			else if (isTag("/td") && nested-- == 0)
+				break;
+		}
+
+		return _text.toString();
+	}
+
+	/**
+	 * Checks if the tag buffer holds a td tag whose class is "cell c3", "cell c4", "cell c5" or "cell c6".
+	 */
+	private boolean isParticipationCell() {
+		if (!isTag("td"))
+			return false;
+
+		int value = findAttributeValue("class");
+		if (value == -1 || !matches(value, "cell"))
+			return false;
+
+		// spaces can separate "cell" from the column, the closing quote must follow the column straight away
+		int column = value + 4;
+		while (column < _tag.length() && Character.isWhitespace(_tag.charAt(column)))
+			++column;
+
+		return column + 2 < _tag.length()
+				&& _tag.charAt(column) == 'c'
+				&& _tag.charAt(column + 1) >= '3' && _tag.charAt(column + 1) <= '6'
+				&& _tag.charAt(column + 2) == '"';
+	}
+
+	/**
+	 * Checks if the tag buffer holds a tag with a name, ignoring letter case.
+	 * @param name Lower case tag name, with a leading / for closing tags.
+	 */
+	private boolean isTag(String name) {
+		// the name must not continue, <tdx> is not a td tag
+		return matches(0, name) && (_tag.length() == name.length() || !Character.isLetterOrDigit(_tag.charAt(name.length())));
+	}
+
+	/**
+	 * Checks if text appears at an index of the tag buffer, ignoring letter case.
+	 * @param index Index in the tag buffer.
+	 * @param text Lower case text.
+	 */
+	private boolean matches(int index, String text) {
+		if (index + text.length() > _tag.length())
+			return false;
+
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.toLowerCase(_tag.charAt(index + i)) != text.charAt(i))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds the double quoted value of an attribute in the tag buffer.
+	 * @param name Lower case attribute name.
+	 * @return Index of the first character of the value or -1 if the tag has no such attribute.
+	 */
+	private int findAttributeValue(String name) {
+		int length = _tag.length();
+		int i = 0;
+
+		while (i < length) {
+			char c = _tag.charAt(i);
+
+			// values are skipped as a whole, so text inside them is never taken for an attribute name
+			if (c == '"' || c == '\'') {
+				int end = i + 1;
+				while (end < length && _tag.charAt(end) != c)
+					++end;
+
+				i = end + 1;
+				continue;
+			}
+
+			if (isAttributeName(i, name)) {
+				int j = i + name.length();
+				while (j < length && Character.isWhitespace(_tag.charAt(j)))
+					++j;
+
+				if (j < length && _tag.charAt(j) == '=') {
+					++j;
+					while (j < length && Character.isWhitespace(_tag.charAt(j)))
+						++j;
+
+					if (j < length && _tag.charAt(j) == '"')
+						return j + 1;
+				}
+			}
+
+			++i;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Checks if an attribute name starts at an index of the tag buffer.
+	 */
+	private boolean isAttributeName(int index, String name) {
+		if (!matches(index, name) || (index > 0 && Character.isLetterOrDigit(_tag.charAt(index - 1))))
+			return false;
+
+		int end = index + name.length();
+		return end == _tag.length() || !Character.isLetterOrDigit(_tag.charAt(end));
+	}
+}
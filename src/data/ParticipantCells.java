@@ -0,0 +1,16 @@
+package data;
+
+import java.io.IOException;
+
+/**
+ * Source of the participation cells (columns c3 to c6) of a participants table, in the order they appear in the table.
+ * @author Dovydas Rupsys
+ */
+interface ParticipantCells {
+	/**
+	 * Gets the text of the next participation cell.
+	 * @return Text of the cell or null if there are no more cells.
+	 * @throws IOException If the cells could not be read.
+	 */
+	String nextCell() throws IOException;
+}
@@ -0,0 +1,74 @@
+package data;
+
+import java.util.ArrayList;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reads the participation cells (columns c3 to c6) of a Moodle participants table from a page that is already parsed, such
+ * as the document of the browser. The table is found by its id and its rows and cells are walked in document order, so the
+ * page never has to be turned back into html.
+ * @author Dovydas Rupsys
+ */
+public class ParticipantTableWalker {
+	public static final String TABLE_ID = "participants";			//Id of the participants table on a Moodle page
+
+	/**
+	 * Finds the participants table of a page.
+	 * @param document Parsed page.
+	 * @return The table or null if the page does not have one.
+	 */
+	public static Element findTable(Document document) {
+		return document != null ? document.getElementById(TABLE_ID) : null;
+	}
+
+	/**
+	 * Reads the text of every participation cell of a table, with the tags inside the cells left out.
+	 * @param table Participants table.
+	 * @return Text of the cells in the order they appear in the table.
+	 */
+	public static ArrayList<String> readCells(Element table) {
+		ArrayList<String> cells = new ArrayList<String>();
+		Node node = table.getFirstChild();
+
+		// walks the elements below the table without recursion, the text of a cell is read as a whole
+		while (node != null) {
+			if (node.getNodeType() == Node.ELEMENT_NODE && isParticipationCell((Element)node)) {
+				cells.add(node.getTextContent());
+			}
+			else if (node.getFirstChild() != null) {
+				node = node.getFirstChild();
+				continue;
+			}
+
+			// goes to the next sibling or back up to the first ancestor that has one
+			while (node != table && node.getNextSibling() == null)
+				node = node.getParentNode();
+
+			node = node == table ? null : node.getNextSibling();
+		}
+
+		return cells;
+	}
+
+	/**
+	 * Checks if an element is a td whose class is "cell c3", "cell c4", "cell c5" or "cell c6".
+	 */
+	private static boolean isParticipationCell(Element element) {
+		if (!element.getTagName().equalsIgnoreCase("td"))
+			return false;
+
+		String value = element.getAttribute("class");
+		if (!value.startsWith("cell"))
+			return false;
+
+		// spaces can separate "cell" from the column
+		int column = 4;
+		while (column < value.length() && Character.isWhitespace(value.charAt(column)))
+			++column;
+
+		return column + 2 == value.length() && value.charAt(column) == 'c' && value.charAt(column + 1) >= '3' && value.charAt(column + 1) <= '6';
+	}
+}
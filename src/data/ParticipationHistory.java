@@ -0,0 +1,506 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps every participation scrape in an append-only log per module, so that the engagement of a student can be followed over
+ * time rather than only the last visit. A log starts with a header and holds length-prefixed records of the scrape time, the
+ * time of the last visit and the student's email. While a log is open only the offsets of every student's records are kept
+ * in memory, in the order they were scraped, so the history of one student is found with a binary search over the file
+ * without reading the rest of the log. Writes and compaction run in order on a single background thread.
+ * @author Dovydas Rupsys
+ */
+public class ParticipationHistory implements Closeable {
+	//Default directory of the logs
+	public static final String DEFAULT_PATH = System.getProperty("user.dir").replaceAll("\\\\", "/") + "/res/history";
+	public static final long COMPACT_AFTER = 30 * UnitVisit.DAY;	//Records older than this are compacted to one a day
+	public static final String EXTENSION = ".log";					//Extension of the log files
+
+	private static final int MAGIC = 0x48495354;					//Marks the beginning of a history log ("HIST")
+	private static final int VERSION = 1;							//Version of the log layout, increased whenever the layout changes
+	private static final int TIME_OFFSET = 4;						//Position of the scrape time after the start of a record
+
+	/**
+	 * Counts the bytes writeUTF uses for a string, without its two byte length.
+	 */
+	private static int utfLength(String text) {
+		int length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Offsets of the records of one student, growing as records are appended.
+	 */
+	private static class OffsetList {
+		private long[] _offsets = new long[4];						//Offsets of the records in the log, in scrape order
+		private int _size = 0;										//Number of offsets
+
+		private void add(long offset) {
+			if (_size == _offsets.length)
+				_offsets = Arrays.copyOf(_offsets, _size * 2);
+
+			_offsets[_size++] = offset;
+		}
+	}
+
+	/**
+	 * Log file of one module with the offsets of its records.
+	 */
+	private static class ModuleLog {
+		private File _file;											//Log file
+		private RandomAccessFile _raf;								//Open log file
+		private HashMap<String, OffsetList> _students;				//Offsets of the records of every student by email
+		private long _end;											//Offset after the last complete record
+		private int _records;										//Number of records in the log
+		private long _lastScrape;									//Latest scrape time in the log, later scrapes must be newer
+
+		/**
+		 * Opens the log of a module, creating it if it does not exist, and indexes its records.
+		 * @param file Log file.
+		 * @param module Name of the module, written to the header of a new log.
+		 * @throws IOException If the log could not be opened or is not a history log.
+		 */
+		private ModuleLog(File file, String module) throws IOException {
+			_file = file;
+
+			if (!file.exists() || file.length() == 0)
+				writeHeader(file, module);
+
+			index();
+			_raf = new RandomAccessFile(file, "rw");
+
+			// a record that was only partly written when the application stopped is dropped
+			if (_raf.length() > _end)
+				_raf.setLength(_end);
+		}
+
+		/**
+		 * Writes the header of an empty log.
+		 */
+		private static void writeHeader(File file, String module) throws IOException {
+			try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(module);
+			}
+		}
+
+		/**
+		 * Reads the log from start to end once and keeps the offset of every complete record.
+		 * @throws IOException If the log could not be read or is not a history log.
+		 */
+		private void index() throws IOException {
+			_students = new HashMap<String, OffsetList>();
+			_records = 0;
+			_lastScrape = Long.MIN_VALUE;
+
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)))) {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION)
+					throw new IOException(_file.getName() + " is not a participation history log.");
+
+				String module = in.readUTF();
+				long offset = 4 + 4 + 2 + utfLength(module);
+				_end = offset;
+
+				while (true) {
+					int length;
+					long scrapedAt;
+					String email;
+					try {
+						length = in.readInt();
+						scrapedAt = in.readLong();
+						in.readLong();
+						email = in.readUTF();
+					} catch (EOFException e) {
+						break;
+					}
+
+					if (length != 8 + 8 + 2 + utfLength(email))
+						throw new IOException(_file.getName() + " is damaged.");
+
+					add(email, offset);
+					_lastScrape = Math.max(_lastScrape, scrapedAt);
+					offset += 4 + length;
+					_end = offset;
+				}
+			} catch (EOFException e) {
+				throw new IOException(_file.getName() + " is damaged.");
+			}
+		}
+
+		/**
+		 * Remembers the offset of a record of a student.
+		 */
+		private void add(String email, long offset) {
+			OffsetList offsets = _students.get(email);
+			if (offsets == null) {
+				offsets = new OffsetList();
+				_students.put(email, offsets);
+			}
+
+			offsets.add(offset);
+			++_records;
+		}
+
+		/**
+		 * Appends the visits of a scrape to the end of the log with a single write. A scrape that is not newer than the last
+		 * scrape in the log is dropped, so the records of every student stay in scrape order and a page that is imported again
+		 * is not recorded twice.
+		 * @param visits Visits that were scraped.
+		 * @param scrapedAt Time of the scrape.
+		 * @return true if the scrape was appended, false if it was dropped.
+		 * @throws IOException If the log could not be written.
+		 */
+		private synchronized boolean append(List<UnitVisit> visits, long scrapedAt) throws IOException {
+			if (scrapedAt <= _lastScrape)
+				return false;
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(visits.size() * 48);
+			DataOutputStream out = new DataOutputStream(bytes);
+			long[] offsets = new long[visits.size()];
+
+			for (int i = 0; i < visits.size(); i++) {
+				offsets[i] = _end + out.size();
+				writeRecord(out, visits.get(i).getEmail(), scrapedAt, visits.get(i).getLastAccess());
+			}
+
+			_raf.seek(_end);
+			_raf.write(bytes.toByteArray());
+
+			// records are only indexed once they are written completely
+			for (int i = 0; i < visits.size(); i++) {
+				add(visits.get(i).getEmail(), offsets[i]);
+			}
+			_end += out.size();
+			_lastScrape = scrapedAt;
+
+			return true;
+		}
+
+		/**
+		 * Writes one record.
+		 */
+		private static void writeRecord(DataOutputStream out, String email, long scrapedAt, long lastAccess) throws IOException {
+			out.writeInt(8 + 8 + 2 + utfLength(email));
+			out.writeLong(scrapedAt);
+			out.writeLong(lastAccess);
+			out.writeUTF(email);
+		}
+
+		/**
+		 * Reads the scrape time of a record.
+		 */
+		private long readTime(long offset) throws IOException {
+			_raf.seek(offset + TIME_OFFSET);
+			return _raf.readLong();
+		}
+
+		/**
+		 * Reads the records of a student scraped within a period.
+		 * @param email Email of the student.
+		 * @param from Earliest scrape time, inclusive.
+		 * @param to Latest scrape time, inclusive.
+		 * @return Pairs of scrape time and last access, oldest first.
+		 * @throws IOException If the log could not be read.
+		 */
+		private synchronized ArrayList<long[]> read(String email, long from, long to) throws IOException {
+			ArrayList<long[]> records = new ArrayList<long[]>();
+			OffsetList offsets = _students.get(email);
+			if (offsets == null)
+				return records;
+
+			// finds the first record scraped at or after the start of the period
+			int low = 0;
+			int high = offsets._size;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (readTime(offsets._offsets[middle]) < from)
+					low = middle + 1;
+				else
+					high = middle;
+			}
+
+			for (int i = low; i < offsets._size; i++) {
+				long scrapedAt = readTime(offsets._offsets[i]);
+				if (scrapedAt > to)
+					break;
+
+				records.add(new long[] { scrapedAt, _raf.readLong() });
+			}
+
+			return records;
+		}
+
+		/**
+		 * Rewrites the log with the records of every student next to each other, keeping only the last record of every day for
+		 * records scraped before a time.
+		 * @param module Name of the module.
+		 * @param before Records scraped before this time are compacted.
+		 * @return Number of records that were dropped.
+		 * @throws IOException If the log could not be rewritten, the old log is kept in that case.
+		 */
+		private synchronized int compact(String module, long before) throws IOException {
+			File temp = new File(_file.getPath() + ".tmp");
+			HashMap<String, OffsetList> students = new HashMap<String, OffsetList>(_students.size() * 2);
+			int kept = 0;
+
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(module);
+
+				for (Map.Entry<String, OffsetList> entry : _students.entrySet()) {
+					String email = entry.getKey();
+					OffsetList offsets = entry.getValue();
+					OffsetList compacted = new OffsetList();
+
+					for (int i = 0; i < offsets._size; i++) {
+						long scrapedAt = readTime(offsets._offsets[i]);
+						long lastAccess = _raf.readLong();
+
+						// an old record is dropped when the next record of the student was scraped on the same day
+						if (scrapedAt < before && i + 1 < offsets._size) {
+							long next = readTime(offsets._offsets[i + 1]);
+							if (next < before && next / UnitVisit.DAY == scrapedAt / UnitVisit.DAY)
+								continue;
+						}
+
+						compacted.add(out.size());
+						writeRecord(out, email, scrapedAt, lastAccess);
+						++kept;
+					}
+
+					students.put(email, compacted);
+				}
+			}
+
+			int dropped = _records - kept;
+			if (dropped == 0) {
+				temp.delete();
+				return 0;
+			}
+
+			_raf.close();
+			if (!_file.delete() || !temp.renameTo(_file)) {
+				// the old log stays in use when it could not be replaced
+				_raf = new RandomAccessFile(_file, "rw");
+				temp.delete();
+				throw new IOException("Could not replace " + _file.getPath());
+			}
+
+			_raf = new RandomAccessFile(_file, "rw");
+			_students = students;
+			_records = kept;
+			_end = _raf.length();
+
+			return dropped;
+		}
+
+		/**
+		 * Closes the log file.
+		 */
+		private synchronized void close() throws IOException {
+			_raf.close();
+		}
+	}
+
+	private File _directory;										//Directory of the logs
+	private HashMap<String, ModuleLog> _logs;						//Open logs by module name
+	private ExecutorService _writer;								//Single thread that appends and compacts in order
+	private IOException _error = null;								//First write that failed since the history was opened
+
+	/**
+	 * Constructs the history kept in a directory. Logs are opened when they are first used.
+	 * @param directory Directory of the logs, created when the first log is written.
+	 */
+	public ParticipationHistory(File directory) {
+		_directory = directory;
+		_logs = new HashMap<String, ModuleLog>();
+		_writer = Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * Gets the open log of a module, opening it first if needed.
+	 * @param module Name of the module.
+	 * @return The log.
+	 * @throws IOException If the log could not be opened.
+	 */
+	private ModuleLog getLog(String module) throws IOException {
+		synchronized (_logs) {
+			ModuleLog log = _logs.get(module);
+			if (log == null) {
+				if (!_directory.exists() && !_directory.mkdirs())
+					throw new IOException("Could not create " + _directory.getPath());
+
+				log = new ModuleLog(getFile(module), module);
+				_logs.put(module, log);
+			}
+
+			return log;
+		}
+	}
+
+	/**
+	 * Gets the log file of a module, characters that cannot be part of a file name are replaced.
+	 * @param module Name of the module.
+	 * @return The log file.
+	 */
+	public File getFile(String module) {
+		return new File(_directory, module.replaceAll("[^A-Za-z0-9_-]", "_") + EXTENSION);
+	}
+
+	/**
+	 * Appends the visits of a scrape to the log of its module in the background. Scrapes that are not newer than the last
+	 * scrape recorded for the module, such as saved pages imported again or older than pages imported before, are left out.
+	 * @param participation Participation read from a participants table.
+	 * @return Result that is true once the scrape was appended or false if it was left out. A write that failed is also
+	 *         reported when the history is closed.
+	 * @throws IllegalArgumentException If the participation has no module.
+	 */
+	public Future<Boolean> record(final UnitParticipation participation) {
+		// the module is checked here, a failure on the writer thread would only be seen when the history is closed
+		String module = participation.getModule();
+		if (module == null || module.trim().isEmpty())
+			throw new IllegalArgumentException("Participation cannot be recorded without a module.");
+
+		if (participation.getVisitCount() == 0)
+			return CompletableFuture.completedFuture(Boolean.TRUE);
+
+		return _writer.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws IOException {
+				try {
+					return getLog(participation.getModule()).append(participation.getVisits(), participation.getScrapedAt());
+				} catch (IOException e) {
+					failed(e);
+					throw e;
+				} catch (RuntimeException e) {
+					IOException error = new IOException("Could not record " + participation.getModule(), e);
+					failed(error);
+					throw error;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compacts the logs of every module in the background once the writes before it have finished.
+	 * @param now Current time, records older than COMPACT_AFTER are compacted to one a day.
+	 */
+	public void compact(final long now) {
+		_writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				File[] files = _directory.listFiles();
+				if (files == null)
+					return;
+
+				for (int i = 0; i < files.length; i++) {
+					if (!files[i].getName().endsWith(EXTENSION))
+						continue;
+
+					try {
+						String module = readModule(files[i]);
+						getLog(module).compact(module, now - COMPACT_AFTER);
+					} catch (IOException e) {
+						failed(e);
+					} catch (RuntimeException e) {
+						failed(new IOException("Could not compact " + files[i].getName(), e));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the name of the module from the header of a log.
+	 */
+	private static String readModule(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file.getName() + " is not a participation history log.");
+
+			return in.readUTF();
+		} catch (EOFException e) {
+			throw new IOException(file.getName() + " is damaged.");
+		}
+	}
+
+	/**
+	 * Reads the history of a student in a module, including scrapes that are still being written only once they finish.
+	 * @param module Name of the module.
+	 * @param email Email of the student.
+	 * @param from Earliest scrape time, inclusive.
+	 * @param to Latest scrape time, inclusive.
+	 * @return Pairs of scrape time and time of the last visit (see UnitVisit.getLastAccess), oldest first.
+	 * @throws IOException If the log could not be read.
+	 */
+	public ArrayList<long[]> getHistory(String module, String email, long from, long to) throws IOException {
+		if (!getFile(module).exists())
+			return new ArrayList<long[]>();
+
+		return getLog(module).read(email, from, to);
+	}
+
+	/**
+	 * Remembers the first write that failed, so that it can be reported when the history is closed.
+	 */
+	private synchronized void failed(IOException e) {
+		e.printStackTrace();
+		if (_error == null)
+			_error = e;
+	}
+
+	/**
+	 * Waits for the writes that are still running and closes every log.
+	 * @throws IOException If a write failed since the history was opened or a log could not be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		_writer.shutdown();
+		try {
+			_writer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (_logs) {
+			for (ModuleLog log : _logs.values()) {
+				log.close();
+			}
+			_logs.clear();
+		}
+
+		synchronized (this) {
+			if (_error != null)
+				throw _error;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import utility.CsvReader;
+
+/**
+ * Imports participation data from a directory of saved Moodle participants pages without a browser. The module of every page
+ * is taken from a mapping file in the directory or else from the file name, the pages are parsed in parallel on a pool with a
+ * thread for every processor, and all visits are applied to the students together once every page was read.
+ * @author Dovydas Rupsys
+ */
+public class ParticipationImporter {
+	public static final String MAPPING_FILE = "modules.csv";		//File of the directory that maps file names to modules
+	//Takes a module code such as M30232 from the start of a file name
+	public static final Pattern DEFAULT_NAME_PATTERN = Pattern.compile("^([A-Za-z]+[0-9]+)");
+
+	private File _directory;										//Directory of the saved pages
+	private Pattern _namePattern;									//Finds the module in a file name, the first group is used
+	private HashMap<String, String> _modules;						//Modules of the file names listed in the mapping file
+	private ArrayList<UnitParticipation> _pages;					//Participation read from every page, oldest page first
+	private ArrayList<String> _errors;								//Pages that could not be read with the reason
+
+	/**
+	 * Constructs an importer for a directory and reads its mapping file if it has one. The mapping file has rows of a file
+	 * name and the module of that file.
+	 * @param directory Directory of saved participants pages.
+	 * @param namePattern Pattern whose first group is the module in a file name, used for files missing from the mapping file.
+	 * @throws IOException If the mapping file could not be read.
+	 */
+	public ParticipationImporter(File directory, Pattern namePattern) throws IOException {
+		_directory = directory;
+		_namePattern = namePattern;
+		_modules = new HashMap<String, String>();
+		_pages = new ArrayList<UnitParticipation>();
+		_errors = new ArrayList<String>();
+
+		File mapping = new File(directory, MAPPING_FILE);
+		if (!mapping.exists())
+			return;
+
+		try (CsvReader reader = new CsvReader(mapping)) {
+			String[] row;
+			while ((row = reader.readRow()) != null) {
+				if (row.length >= 2 && row[0].trim().length() > 0)
+					_modules.put(row[0].trim(), row[1].trim());
+			}
+		}
+	}
+
+	/**
+	 * Lists the saved pages of the directory, oldest first, so that when a module has several pages the visits of the newest
+	 * page are applied last and every page is recorded in the history in scrape order.
+	 * @return Html files sorted by modification time and then by name.
+	 */
+	public File[] findPages() {
+		File[] pages = _directory.listFiles();
+		if (pages == null)
+			return new File[0];
+
+		ArrayList<File> html = new ArrayList<File>();
+		for (int i = 0; i < pages.length; i++) {
+			String name = pages[i].getName().toLowerCase();
+			if (pages[i].isFile() && (name.endsWith(".html") || name.endsWith(".htm")))
+				html.add(pages[i]);
+		}
+
+		File[] sorted = html.toArray(new File[html.size()]);
+		Arrays.sort(sorted, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				int order = Long.compare(a.lastModified(), b.lastModified());
+				return order != 0 ? order : a.compareTo(b);
+			}
+		});
+
+		return sorted;
+	}
+
+	/**
+	 * Finds the module of a page, from the mapping file if the page is listed there and from its file name otherwise.
+	 * @param page Saved page.
+	 * @return Name of the module.
+	 */
+	public String getModuleName(File page) {
+		String module = _modules.get(page.getName());
+		if (module != null)
+			return module;
+
+		String name = page.getName();
+		Matcher matcher = _namePattern.matcher(name);
+		if (matcher.find() && matcher.groupCount() >= 1)
+			return matcher.group(1);
+
+		// without a match the name of the file without its extension is used
+		int extension = name.lastIndexOf('.');
+		return extension > 0 ? name.substring(0, extension) : name;
+	}
+
+	/**
+	 * Reads every page of the directory in parallel. Pages that fail are recorded as errors and do not stop the others.
+	 * @param threads Number of pages read at the same time.
+	 * @throws InterruptedException If the thread was interrupted while waiting for the pages.
+	 */
+	public void readPages(int threads) throws InterruptedException {
+		File[] pages = findPages();
+		ArrayList<Callable<UnitParticipation>> tasks = new ArrayList<Callable<UnitParticipation>>(pages.length);
+
+		for (int i = 0; i < pages.length; i++) {
+			final File page = pages[i];
+			final String module = getModuleName(page);
+
+			tasks.add(new Callable<UnitParticipation>() {
+				@Override
+				public UnitParticipation call() throws IOException {
+					return readPage(page, module);
+				}
+			});
+		}
+
+		if (tasks.isEmpty())
+			return;
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			List<Future<UnitParticipation>> results = pool.invokeAll(tasks);
+
+			// results are collected in the order of the pages, so the outcome does not depend on which page finished first
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					_pages.add(results.get(i).get());
+				} catch (ExecutionException e) {
+					_errors.add(pages[i].getName() + ": " + e.getCause().getMessage());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the participants table of a saved page.
+	 * @param page Saved page, expected to be UTF-8.
+	 * @param module Module the page belongs to.
+	 * @return Participation of the page.
+	 * @throws IOException If the page could not be read or no module was found for it.
+	 */
+	public static UnitParticipation readPage(File page, String module) throws IOException {
+		if (module == null || module.trim().isEmpty())
+			throw new IOException("No module name was found for the page.");
+
+		try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(page), StandardCharsets.UTF_8))) {
+			// times since the last visit count from when the page was saved, which is the import time only if it is not known
+			long savedAt = page.lastModified();
+			if (savedAt <= 0)
+				savedAt = System.currentTimeMillis();
+
+			return new UnitParticipation(module, new ParticipantCellReader(in, true), savedAt);
+		}
+	}
+
+	/**
+	 * Applies the visits of every page that was read to the students.
+	 * @param directory Directory used to find students by their email.
+	 */
+	public void apply(StudentDirectory directory) {
+		for (int i = 0; i < _pages.size(); i++) {
+			_pages.get(i).applyParticipantData(directory);
+		}
+	}
+
+	/**
+	 * Gets the participation read from every page.
+	 * @return List of participation, oldest page first.
+	 */
+	public ArrayList<UnitParticipation> getPages() {
+		return _pages;
+	}
+
+	/**
+	 * Gets the number of visits read from all pages.
+	 * @return Number of visits.
+	 */
+	public int getVisitCount() {
+		int visits = 0;
+		for (int i = 0; i < _pages.size(); i++) {
+			visits += _pages.get(i).getVisitCount();
+		}
+
+		return visits;
+	}
+
+	/**
+	 * Gets the pages that could not be read.
+	 * @return List of file names with the reason.
+	 */
+	public ArrayList<String> getErrors() {
+		return _errors;
+	}
+}
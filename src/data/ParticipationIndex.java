@@ -0,0 +1,95 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps the students of every module sorted by the time of their last visit, so that the students who have not visited a
+ * module since some time are found without looking at every student. Students that never visited a module sort first, visits
+ * whose time could not be read are not indexed.
+ * @author Dovydas Rupsys
+ */
+public class ParticipationIndex {
+	//Students of every module by their last access, a set as many students share a time such as "never" or "now"
+	private HashMap<String, TreeMap<Long, LinkedHashSet<Student>>> _modules;
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public ParticipationIndex() {
+		_modules = new HashMap<String, TreeMap<Long, LinkedHashSet<Student>>>();
+	}
+
+	/**
+	 * Indexes a visit of a student, replacing the visit of the same module it replaced.
+	 * @param student Student that visited the module.
+	 * @param previous Visit of the same module that was replaced or null.
+	 * @param visit New visit.
+	 */
+	public void update(Student student, UnitVisit previous, UnitVisit visit) {
+		if (previous != null)
+			remove(student, previous);
+
+		if (visit.getLastAccess() == UnitVisit.UNKNOWN)
+			return;
+
+		TreeMap<Long, LinkedHashSet<Student>> module = _modules.get(visit.getModule());
+		if (module == null) {
+			module = new TreeMap<Long, LinkedHashSet<Student>>();
+			_modules.put(visit.getModule(), module);
+		}
+
+		LinkedHashSet<Student> students = module.get(visit.getLastAccess());
+		if (students == null) {
+			students = new LinkedHashSet<Student>(2);
+			module.put(visit.getLastAccess(), students);
+		}
+
+		students.add(student);
+	}
+
+	/**
+	 * Removes a visit from the index.
+	 */
+	private void remove(Student student, UnitVisit visit) {
+		TreeMap<Long, LinkedHashSet<Student>> module = _modules.get(visit.getModule());
+		if (module == null)
+			return;
+
+		LinkedHashSet<Student> students = module.get(visit.getLastAccess());
+		if (students != null && students.remove(student) && students.isEmpty())
+			module.remove(visit.getLastAccess());
+	}
+
+	/**
+	 * Finds the students whose last visit of a module was before a time.
+	 * @param module Name of the module.
+	 * @param before Time in milliseconds since the epoch.
+	 * @return Students that did not visit the module since that time, those inactive for the longest time first.
+	 */
+	public ArrayList<Student> findInactive(String module, long before) {
+		ArrayList<Student> inactive = new ArrayList<Student>();
+
+		TreeMap<Long, LinkedHashSet<Student>> students = _modules.get(module);
+		if (students == null)
+			return inactive;
+
+		for (Map.Entry<Long, LinkedHashSet<Student>> entry : students.headMap(before, false).entrySet()) {
+			inactive.addAll(entry.getValue());
+		}
+
+		return inactive;
+	}
+
+	/**
+	 * Gets the modules that have indexed visits.
+	 * @return Sorted module names.
+	 */
+	public TreeSet<String> getModules() {
+		return new TreeSet<String>(_modules.keySet());
+	}
+}
@@ -1,66 +1,69 @@
 package data;
 
 /**
- * Stores result information.
+ * Stores result information. The result is a view of one row of an assessment's result store.
  * @author Darren Middleton, Dovydas Rupsys
  */
 public class Result {
-	private String _candidateName;				//Stores the name of the candidate
-	private String _candidateKey; 				//Stores the candidate key (anonymous code)
-	private String _mark;						//Stores the mark
-	private String _grade;						//Stores any marking exceptions
-	
+	private ResultStore _store;					//Store that contains the result
+	private int _row;							//Row of the result in the store
+
 	/**
 	 * Constructs results object.
-	 * @param grade Marking note of the result.
-	 * @param mark Mark achieved on the assessment.
-	 * @param candidateKey Anonymous marking code. 
+	 * @param store Store that contains the result.
+	 * @param row Row of the result in the store.
 	 */
-	public Result(String grade, String mark, String candidateKey){
-		_candidateName = "N/A";
-		_candidateKey = candidateKey;
-		_grade = grade;
-		_mark = mark;
+	Result(ResultStore store, int row){
+		_store = store;
+		_row = row;
 	}
-	
+
 	/**
 	 * Sets the candidate name to whom these results belong.
 	 * @param name Name of the student.
 	 */
 	public void setCandidateName(String name){
-		_candidateName = name;
+		_store.setName(_row, name);
 	}
-	
+
 	/**
 	 * Gets the name of the student to whom these results belong.
 	 * @return Name of the student.
 	 */
 	public String getCandidateName(){
-		return _candidateName;
+		return _store.getName(_row);
 	}
-	
+
 	/**
 	 * Retrieves the candidate key.
 	 * @return The candidate key.
 	 */
 	public String getCandidateKey(){
-		return _candidateKey;
+		return _store.getKey(_row);
 	}
-	
+
 	/**
 	 * Gets the mark for that object
 	 * @return The mark.
 	 */
 	public String getMark(){
-		return _mark;
+		return _store.getMarkText(_row);
+	}
+
+	/**
+	 * Gets the mark without converting it to text.
+	 * @return The mark or ResultStore.NO_MARK if the mark is not a number.
+	 */
+	public float getMarkValue(){
+		return _store.getMarkValue(_row);
 	}
-	
+
 	/**
 	 * Gets any marking exceptions.
 	 * @return Anyone marking exceptions for that object.
 	 */
 	public String getGrade(){
-		return _grade;
+		return _store.getGrade(_row);
 	}
 
 	/**
@@ -68,9 +71,9 @@ public class Result {
 	 */
 	@Override
 	public String toString() {
-		return _candidateName + " " + _candidateKey;
+		return getCandidateName() + " " + getCandidateKey();
 	}
-	
+
 	/**
 	 * Checks if this result has the same candidate name and key as some other result.
 	 */
@@ -78,10 +81,18 @@ public class Result {
 	public boolean equals(Object obj) {
 		if (obj instanceof Result){
 			Result r = (Result)obj;
-			
-			return toString().equals(r.toString());
+
+			return getCandidateKey().equals(r.getCandidateKey()) && getCandidateName().equals(r.getCandidateName());
 		}
-		
+
 		return false;
 	}
+
+	/**
+	 * Creates a hash code from the candidate key and name.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * getCandidateKey().hashCode() + getCandidateName().hashCode();
+	}
 }
@@ -0,0 +1,254 @@
+package data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import utility.CsvReader;
+
+/**
+ * Turns rows of an exam result file into assessments. Rows are processed one at a time and the results of several loaders
+ * can be merged, so a file can be split into parts that are processed separately.
+ * @author Dovydas Rupsys, Darren Middleton
+ */
+public class ResultLoader {
+	private StudentDirectory _directory;						//Directory used to de-anonymise candidate keys
+	private ResultSchema _schema;								//Column layout of the file
+	private ArrayList<Assessment> _assessments;					//Assessments created by this loader in the order they were found
+	private HashMap<String, HashMap<String, Assessment>> _assessmentMap;	//Maps module and assessment codes to assessments
+	private ArrayList<Student> _resultStudents;					//Students that have results waiting to be applied
+	private ArrayList<StudentResult> _studentResults;			//Results waiting to be applied, in the same order as _resultStudents
+	private ImportFingerprint _fingerprint;						//Fingerprints of the processed rows, used by later imports of the file
+	private int _deanonymised;									//Number of results that have a student associated
+	private int _unidentified;									//Number of stray results
+
+	/**
+	 * Constructs a loader for rows that follow the provided header.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @param header Header row of the exam result file.
+	 */
+	public ResultLoader(StudentDirectory directory, String[] header) {
+		_directory = directory;
+		_schema = new ResultSchema(header);
+		_assessments = new ArrayList<Assessment>();
+		_assessmentMap = new HashMap<String, HashMap<String, Assessment>>();
+		_resultStudents = new ArrayList<Student>();
+		_studentResults = new ArrayList<StudentResult>();
+		_fingerprint = new ImportFingerprint();
+	}
+
+	/**
+	 * Constructs an empty loader that shares the column layout of another loader.
+	 * @param loader Loader whose directory and schema are used.
+	 */
+	public ResultLoader(ResultLoader loader) {
+		_directory = loader._directory;
+		_schema = loader._schema;
+		_assessments = new ArrayList<Assessment>();
+		_assessmentMap = new HashMap<String, HashMap<String, Assessment>>();
+		_resultStudents = new ArrayList<Student>();
+		_studentResults = new ArrayList<StudentResult>();
+		_fingerprint = new ImportFingerprint();
+	}
+
+	/**
+	 * Processes exam result data one row at a time as it is read.
+	 * @param reader Csv reader over the unprocessed exam data.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @param progress Progress that is updated while rows are processed and checked for cancellation.
+	 * @return Loader with the processed results or null if the file was empty.
+	 * @throws IOException If the file could not be read.
+	 */
+	public static ResultLoader load(CsvReader reader, StudentDirectory directory, LoadProgress progress) throws IOException {
+		// Gets the headers row from the file, if the file is empty there is nothing to load
+		String[] header = reader.readRow();
+		if (header == null)
+			return null;
+
+		ResultLoader loader = new ResultLoader(directory, header);
+		long reportedChars = 0;
+		int rows = 0;
+
+		// Goes through the remaining rows until the file ends or loading is cancelled
+		String[] line;
+		while ((line = reader.readRow()) != null) {
+			loader.processRow(line);
+
+			if (++rows == LoadProgress.UPDATE_INTERVAL) {
+				progress.addProcessed(reader.getCharactersRead() - reportedChars, rows);
+				reportedChars = reader.getCharactersRead();
+				rows = 0;
+
+				if (progress.isCancelled())
+					break;
+			}
+		}
+
+		progress.addProcessed(reader.getCharactersRead() - reportedChars, rows);
+
+		return loader;
+	}
+
+	/**
+	 * Processes a single row of the exam result file.
+	 * @param line Row of the file split into columns.
+	 */
+	public void processRow(String[] line) {
+		// removes unwanted characters from data and saves it
+		String module = _schema.getModule(line);
+		String ass = _schema.getAssessment(line);
+		String code = _schema.getCandidateKey(line);
+		String mark = _schema.getMark(line);
+		String grade = _schema.getGrade(line);
+		String name = "N/A";
+		long rowId = ImportFingerprint.rowId(_schema, line);
+
+		// parses the mark and encodes the grade once, every other part of the program uses these values
+		float markValue = ResultStore.parseMark(mark);
+		int gradeCode = ResultStore.GRADES.encode(grade);
+
+		// checks if this type of assessment exists, if it does not then creates it and adds it to the list of assessments
+		Assessment assessment = findAssessment(module, ass);
+		if (assessment == null) {
+			assessment = new Assessment(module, ass);
+			addAssessment(assessment);
+		}
+
+		// tries to de-anonymises code
+		Student s = _directory.deAnonymise(code);
+
+		//If some student has the code specified then use student's id
+		if (s != null) {
+			code = s.getNumber();
+			name = s.getName();
+
+			//Creates student's result object, it is added to the student once loading is finished.
+			_resultStudents.add(s);
+			_studentResults.add(new StudentResult(assessment.getNameCode(), markValue, mark, gradeCode));
+
+			++_deanonymised;
+		}
+		else
+			++_unidentified;
+
+		// Adds the result to the assessment, if this result already exists then it is ignored
+		assessment.addResult(code, name, markValue, mark, gradeCode);
+		_fingerprint.add(rowId, ImportFingerprint.rowHash(line), assessment, code);
+	}
+
+	/**
+	 * Finds an assessment created by this loader.
+	 * @param module Module code of the assessment.
+	 * @param assessment Assessment code.
+	 * @return The assessment or null if this loader has not created it.
+	 */
+	private Assessment findAssessment(String module, String assessment) {
+		HashMap<String, Assessment> moduleAssessments = _assessmentMap.get(module);
+
+		if (moduleAssessments == null)
+			return null;
+
+		return moduleAssessments.get(assessment);
+	}
+
+	/**
+	 * Adds an assessment to the list and to the map of assessments.
+	 * @param assessment Assessment to be added.
+	 */
+	private void addAssessment(Assessment assessment) {
+		HashMap<String, Assessment> moduleAssessments = _assessmentMap.get(assessment.getModuleName());
+
+		if (moduleAssessments == null) {
+			moduleAssessments = new HashMap<String, Assessment>();
+			_assessmentMap.put(assessment.getModuleName(), moduleAssessments);
+		}
+
+		moduleAssessments.put(assessment.getAssessmentName(), assessment);
+		_assessments.add(assessment);
+	}
+
+	/**
+	 * Appends everything loaded by another loader to this loader. The other loader must have processed rows that come after the rows
+	 * of this loader, so that the merged result is the same as if all rows were processed by this loader.
+	 * @param loader Loader to be merged into this one.
+	 */
+	public void merge(ResultLoader loader) {
+		for (int i = 0; i < loader._assessments.size(); i++) {
+			Assessment other = loader._assessments.get(i);
+			Assessment assessment = findAssessment(other.getModuleName(), other.getAssessmentName());
+
+			// if this loader has not seen the assessment then take it over as it is
+			if (assessment == null) {
+				addAssessment(other);
+				continue;
+			}
+
+			// otherwise add results that are not already in this loader's assessment
+			for (int j = 0; j < other.getResultsSize(); j++) {
+				Result result = other.getResult(j);
+				if (!assessment.containsResult(result))
+					assessment.addResult(result);
+			}
+		}
+
+		// rows of the other loader refer to its assessments, which are now this loader's assessments with the same codes
+		ImportFingerprint other = loader._fingerprint;
+		for (int slot = 0; slot < other.getCapacity(); slot++) {
+			if (other.getId(slot) == 0)
+				continue;
+
+			Assessment assessment = other.getAssessment(slot);
+			_fingerprint.add(other.getId(slot), other.getHash(slot),
+					findAssessment(assessment.getModuleName(), assessment.getAssessmentName()), other.getKey(slot));
+		}
+
+		_resultStudents.addAll(loader._resultStudents);
+		_studentResults.addAll(loader._studentResults);
+		_deanonymised += loader._deanonymised;
+		_unidentified += loader._unidentified;
+	}
+
+	/**
+	 * Adds the de-anonymised results to the students they belong to.
+	 */
+	public void applyStudentResults() {
+		for (int i = 0; i < _resultStudents.size(); i++) {
+			_resultStudents.get(i).addResult(_studentResults.get(i));
+		}
+
+		_resultStudents.clear();
+		_studentResults.clear();
+	}
+
+	/**
+	 * Gets the assessments loaded.
+	 * @return List of assessments in the order they were found.
+	 */
+	public ArrayList<Assessment> getAssessments() {
+		return _assessments;
+	}
+
+	/**
+	 * Gets the fingerprints of the processed rows.
+	 * @return Row fingerprints.
+	 */
+	public ImportFingerprint getFingerprint() {
+		return _fingerprint;
+	}
+
+	/**
+	 * Gets the number of results that were matched to a student.
+	 * @return Number of de-anonymised results.
+	 */
+	public int getDeanonymisedCount() {
+		return _deanonymised;
+	}
+
+	/**
+	 * Gets the number of results that did not match any student.
+	 * @return Number of unidentified results.
+	 */
+	public int getUnidentifiedCount() {
+		return _unidentified;
+	}
+}
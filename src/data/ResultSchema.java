@@ -0,0 +1,138 @@
+package data;
+
+import java.util.HashMap;
+
+/**
+ * Column layout of an exam result file. Column indexes are resolved once from the header row, and values are cleaned of quote
+ * and hash characters in a single pass without regular expressions, so rows can be read cheaply.
+ * @author Dovydas Rupsys
+ */
+public class ResultSchema {
+	private int _module;										//Index of the module column
+	private int _assessment;									//Index of the assessment column
+	private int _candidateKey;									//Index of the candidate key column
+	private int _mark;											//Index of the mark column
+	private int _grade;											//Index of the grade column
+
+	/**
+	 * Constructs the schema from the header row of a file.
+	 * @param header Header row of the exam result file.
+	 * @throws IllegalArgumentException If one of the required columns is missing.
+	 */
+	public ResultSchema(String[] header) {
+		// Goes through every column in the header, removes unwanted characters and maps it to the index of the column
+		HashMap<String, Integer> columns = new HashMap<String, Integer>();
+		for (int i = 0; i < header.length; i++) {
+			columns.put(strip(header[i], header[i].length(), true).toLowerCase(), i);
+		}
+
+		_module = findColumn(columns, "module");
+		_assessment = findColumn(columns, "ass");
+		_candidateKey = findColumn(columns, "candkey");
+		_mark = findColumn(columns, "mark");
+		_grade = findColumn(columns, "grade");
+	}
+
+	/**
+	 * Gets the index of a required column.
+	 * @param columns Map of cleaned column names to indexes.
+	 * @param name Name of the column.
+	 * @return Index of the column.
+	 */
+	private static int findColumn(HashMap<String, Integer> columns, String name) {
+		Integer index = columns.get(name);
+
+		if (index == null)
+			throw new IllegalArgumentException("The file does not contain a \"" + name + "\" column.");
+
+		return index;
+	}
+
+	/**
+	 * Removes quote and hash characters, and optionally spaces, from the beginning of a value.
+	 * @param value Value to be cleaned.
+	 * @param end Number of characters at the beginning of the value that are kept.
+	 * @param spaces true if spaces should be removed as well.
+	 * @return Cleaned value. If there was nothing to remove the value itself is returned.
+	 */
+	private static String strip(String value, int end, boolean spaces) {
+		char[] chars = null;
+		int length = 0;
+
+		for (int i = 0; i < end; i++) {
+			char c = value.charAt(i);
+			boolean unwanted = c == '"' || c == '#' || (spaces && c == ' ');
+
+			// copies the characters only once the first unwanted character is found
+			if (unwanted && chars == null) {
+				chars = new char[end];
+				value.getChars(0, i, chars, 0);
+				length = i;
+			}
+			else if (!unwanted && chars != null)
+				chars[length++] = c;
+		}
+
+		if (chars != null)
+			return new String(chars, 0, length);
+
+		return end == value.length() ? value : value.substring(0, end);
+	}
+
+	/**
+	 * Removes quote and hash characters from a value.
+	 * @param value Value to be cleaned.
+	 * @return Cleaned value.
+	 */
+	private static String clean(String value) {
+		return strip(value, value.length(), false);
+	}
+
+	/**
+	 * Gets the cleaned module code of a row.
+	 * @param row Row of the file split into columns.
+	 * @return Module code.
+	 */
+	public String getModule(String[] row) {
+		return clean(row[_module]);
+	}
+
+	/**
+	 * Gets the cleaned assessment code of a row.
+	 * @param row Row of the file split into columns.
+	 * @return Assessment code.
+	 */
+	public String getAssessment(String[] row) {
+		return clean(row[_assessment]);
+	}
+
+	/**
+	 * Gets the cleaned candidate key of a row. Only the part before the first '/' is used.
+	 * @param row Row of the file split into columns.
+	 * @return Candidate key.
+	 */
+	public String getCandidateKey(String[] row) {
+		String value = row[_candidateKey];
+		int end = value.indexOf('/');
+
+		return strip(value, end == -1 ? value.length() : end, false);
+	}
+
+	/**
+	 * Gets the cleaned mark of a row.
+	 * @param row Row of the file split into columns.
+	 * @return Mark.
+	 */
+	public String getMark(String[] row) {
+		return clean(row[_mark]);
+	}
+
+	/**
+	 * Gets the cleaned grade of a row.
+	 * @param row Row of the file split into columns.
+	 * @return Grade.
+	 */
+	public String getGrade(String[] row) {
+		return clean(row[_grade]);
+	}
+}
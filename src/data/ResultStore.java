@@ -0,0 +1,337 @@
+package data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Columnar storage for the results of one assessment. Every column is a separate array: marks are parsed once into floats and
+ * grades are stored as dictionary codes, so a result takes a few array slots instead of an object with several strings.
+ * Results are found by candidate key through an open addressing hash table of row numbers.
+ * @author Dovydas Rupsys
+ */
+public class ResultStore {
+	//Dictionaries shared by all result stores
+	static final StringDictionary MODULES = new StringDictionary();
+	static final StringDictionary ASSESSMENTS = new StringDictionary();
+	static final StringDictionary ASSESSMENT_NAMES = new StringDictionary();
+	static final StringDictionary GRADES = new StringDictionary();
+
+	public static final float NO_MARK = Float.NaN;					//Stored instead of marks that are not numbers
+	private static final int INITIAL_CAPACITY = 16;					//Number of rows the columns can hold at first
+
+	private String[] _keys;											//Candidate keys
+	private String[] _names;										//Candidate names
+	private float[] _marks;											//Marks, NO_MARK if the mark was not a number
+	private int[] _grades;											//Grade codes
+	private HashMap<Integer, String> _markText;						//Original text of the few marks that formatMark does not restore
+	private int[] _slots;											//Hash table of row numbers plus one, 0 marks an empty slot
+	private int _size;												//Number of rows
+
+	/**
+	 * Constructs an empty store.
+	 */
+	public ResultStore() {
+		_keys = new String[INITIAL_CAPACITY];
+		_names = new String[INITIAL_CAPACITY];
+		_marks = new float[INITIAL_CAPACITY];
+		_grades = new int[INITIAL_CAPACITY];
+		_markText = null;
+		_slots = new int[INITIAL_CAPACITY * 2];
+		_size = 0;
+	}
+
+	/**
+	 * Parses the text of a mark.
+	 * @param mark Mark as it appears in the file.
+	 * @return Value of the mark or NO_MARK if the mark is not a number.
+	 */
+	public static float parseMark(String mark) {
+		// padded marks such as " 65" are numbers, as Float.parseFloat ignores the spaces around them
+		String text = mark.trim();
+		if (text.isEmpty())
+			return NO_MARK;
+
+		// avoids throwing exceptions for marks that clearly are not numbers
+		char c = text.charAt(0);
+		if (!(c >= '0' && c <= '9') && c != '-' && c != '+' && c != '.')
+			return NO_MARK;
+
+		try {
+			return Float.parseFloat(text);
+		} catch (NumberFormatException e) {
+			return NO_MARK;
+		}
+	}
+
+	/**
+	 * Converts a mark back to text. Whole numbers are written without a fraction.
+	 * @param mark Value of the mark.
+	 * @return Text of the mark or an empty string for NO_MARK.
+	 */
+	public static String formatMark(float mark) {
+		if (Float.isNaN(mark))
+			return "";
+
+		if (mark == (long)mark)
+			return Long.toString((long)mark);
+
+		return Float.toString(mark);
+	}
+
+	/**
+	 * Checks if the original text of a mark has to be kept, because it is not a number or because formatMark writes the
+	 * number differently, as with "65.0", "075" or marks too large for a float.
+	 * @param mark Parsed mark.
+	 * @param markText Mark as it appears in the file.
+	 * @return true if the text has to be kept.
+	 */
+	static boolean keepsText(float mark, String markText) {
+		return markText != null && !markText.isEmpty() && !markText.equals(formatMark(mark));
+	}
+
+	/**
+	 * Finds the slot of the hash table where a key is or should be stored.
+	 * @param key Candidate key.
+	 * @return Index of the slot.
+	 */
+	private int findSlot(String key) {
+		int mask = _slots.length - 1;
+		int hash = key.hashCode();
+		int slot = (hash ^ (hash >>> 16)) & mask;
+
+		// linear probing until the key or an empty slot is found
+		while (_slots[slot] != 0 && !_keys[_slots[slot] - 1].equals(key)) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Grows the columns and the hash table when the store is full.
+	 */
+	private void ensureCapacity() {
+		if (_size < _keys.length)
+			return;
+
+		int capacity = _keys.length * 2;
+		_keys = Arrays.copyOf(_keys, capacity);
+		_names = Arrays.copyOf(_names, capacity);
+		_marks = Arrays.copyOf(_marks, capacity);
+		_grades = Arrays.copyOf(_grades, capacity);
+
+		rebuildIndex(capacity * 2);
+	}
+
+	/**
+	 * Recreates the hash table from the key column.
+	 * @param slotCount Number of slots, must be a power of two larger than the number of rows.
+	 */
+	private void rebuildIndex(int slotCount) {
+		_slots = new int[slotCount];
+
+		for (int row = 0; row < _size; row++) {
+			_slots[findSlot(_keys[row])] = row + 1;
+		}
+	}
+
+	/**
+	 * Finds the row of a candidate key.
+	 * @param key Candidate key.
+	 * @return Row number or -1 if the store has no result for that key.
+	 */
+	public int indexOf(String key) {
+		return _slots[findSlot(key)] - 1;
+	}
+
+	/**
+	 * Adds a result unless the store already has a result with the same candidate key.
+	 * @param key Candidate key.
+	 * @param name Candidate name.
+	 * @param mark Parsed mark.
+	 * @param markText Original text of the mark, only kept when formatMark does not restore it.
+	 * @param grade Grade code.
+	 * @return true if the result was added, false if the key was already in the store.
+	 */
+	public boolean add(String key, String name, float mark, String markText, int grade) {
+		if (indexOf(key) != -1)
+			return false;
+
+		ensureCapacity();
+
+		int row = _size++;
+		_keys[row] = key;
+		_names[row] = name;
+		_marks[row] = mark;
+		_grades[row] = grade;
+		_slots[findSlot(key)] = row + 1;
+
+		if (keepsText(mark, markText)) {
+			if (_markText == null)
+				_markText = new HashMap<Integer, String>();
+			_markText.put(row, markText);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Replaces the values of a row, keeping its candidate key.
+	 * @param row Row number.
+	 * @param name Candidate name.
+	 * @param mark Parsed mark.
+	 * @param markText Original text of the mark, only kept when formatMark does not restore it.
+	 * @param grade Grade code.
+	 */
+	public void set(int row, String name, float mark, String markText, int grade) {
+		_names[row] = name;
+		_marks[row] = mark;
+		_grades[row] = grade;
+
+		if (_markText != null)
+			_markText.remove(row);
+
+		if (keepsText(mark, markText)) {
+			if (_markText == null)
+				_markText = new HashMap<Integer, String>();
+			_markText.put(row, markText);
+		}
+	}
+
+	/**
+	 * Removes the results of several candidates. The remaining rows keep their order and the columns are compacted once.
+	 * @param keys Candidate keys of the results to be removed.
+	 * @return Number of results removed.
+	 */
+	public int removeAll(Collection<String> keys) {
+		boolean[] removed = new boolean[_size];
+		int count = 0;
+
+		for (String key : keys) {
+			int row = indexOf(key);
+			if (row != -1 && !removed[row]) {
+				removed[row] = true;
+				++count;
+			}
+		}
+
+		if (count > 0)
+			compact(removed);
+
+		return count;
+	}
+
+	/**
+	 * Moves the rows that are kept to the front of the columns and recreates the hash table.
+	 * @param removed Flags of the rows to be dropped.
+	 */
+	private void compact(boolean[] removed) {
+		HashMap<Integer, String> markText = null;
+		int size = 0;
+
+		for (int row = 0; row < _size; row++) {
+			if (removed[row])
+				continue;
+
+			_keys[size] = _keys[row];
+			_names[size] = _names[row];
+			_marks[size] = _marks[row];
+			_grades[size] = _grades[row];
+
+			// original text of marks is kept by row number, so it moves with the row
+			if (_markText != null && _markText.containsKey(row)) {
+				if (markText == null)
+					markText = new HashMap<Integer, String>();
+				markText.put(size, _markText.get(row));
+			}
+
+			++size;
+		}
+
+		// releases the strings of the dropped rows
+		Arrays.fill(_keys, size, _size, null);
+		Arrays.fill(_names, size, _size, null);
+
+		_size = size;
+		_markText = markText;
+		rebuildIndex(_slots.length);
+	}
+
+	/**
+	 * Gets the number of results in the store.
+	 * @return Number of rows.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the candidate key of a row.
+	 * @param row Row number.
+	 * @return Candidate key.
+	 */
+	public String getKey(int row) {
+		return _keys[row];
+	}
+
+	/**
+	 * Gets the candidate name of a row.
+	 * @param row Row number.
+	 * @return Candidate name.
+	 */
+	public String getName(int row) {
+		return _names[row];
+	}
+
+	/**
+	 * Sets the candidate name of a row.
+	 * @param row Row number.
+	 * @param name Candidate name.
+	 */
+	public void setName(int row, String name) {
+		_names[row] = name;
+	}
+
+	/**
+	 * Gets the mark of a row.
+	 * @param row Row number.
+	 * @return Mark or NO_MARK if the mark is not a number.
+	 */
+	public float getMarkValue(int row) {
+		return _marks[row];
+	}
+
+	/**
+	 * Gets the text of the mark of a row.
+	 * @param row Row number.
+	 * @return Mark as text.
+	 */
+	public String getMarkText(int row) {
+		if (_markText != null) {
+			String text = _markText.get(row);
+			if (text != null)
+				return text;
+		}
+
+		return formatMark(_marks[row]);
+	}
+
+	/**
+	 * Gets the grade code of a row.
+	 * @param row Row number.
+	 * @return Grade code.
+	 */
+	public int getGradeCode(int row) {
+		return _grades[row];
+	}
+
+	/**
+	 * Gets the grade of a row.
+	 * @param row Row number.
+	 * @return Grade.
+	 */
+	public String getGrade(int row) {
+		return GRADES.decode(_grades[row]);
+	}
+}
@@ -0,0 +1,213 @@
+package data;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import studentdata.DataTable;
+
+/**
+ * Turns the student roster received from the server into students. Cells are decoded in one pass over the table, and the rows
+ * are applied to the loaded students in a second pass that adds new students to the student list and the directory indexes
+ * together, with every collection sized for the whole roster up front. The time spent in every stage is recorded.
+ * @author Dovydas Rupsys
+ */
+public class RosterBuilder {
+	//Column positions of the roster
+	public static final int NUMBER = 0;
+	public static final int EMAIL = 1;
+	public static final int NAME = 2;
+	public static final int TUTOR = 3;
+
+	//Charset the connector decodes the server's UTF-8 bytes with
+	private static final Charset CONNECTOR_CHARSET = Charset.defaultCharset();
+	//Cells only have to be decoded again when the connector did not already use UTF-8
+	private static final boolean DECODE_CELLS = !CONNECTOR_CHARSET.equals(StandardCharsets.UTF_8);
+
+	private ArrayList<String[]> _rows;								//Decoded rows of the roster
+	private long _fetchTime;										//Nanoseconds spent waiting for the server
+	private long _decodeTime;										//Nanoseconds spent decoding cells
+	private long _applyTime;										//Nanoseconds spent adding and updating students
+	private int _added;												//Number of students that were new
+	private int _updated;											//Number of students whose email or tutor changed
+	private int _unchanged;											//Number of students that were already up to date
+	private int _skipped;											//Number of rows without a student number
+
+	/**
+	 * Constructs a builder over decoded rows.
+	 * @param rows Rows of the roster, student number, email, name and tutor.
+	 */
+	public RosterBuilder(ArrayList<String[]> rows) {
+		_rows = rows;
+	}
+
+	/**
+	 * Reads and decodes every cell of a roster table.
+	 * @param data Table received from the server.
+	 * @param fetchTime Nanoseconds it took the server to send the table.
+	 * @return Builder over the decoded rows.
+	 */
+	public static RosterBuilder read(DataTable data, long fetchTime) {
+		long start = System.nanoTime();
+		int rowCount = data.getRowCount();
+		int columnCount = data.getColumnCount();
+		ArrayList<String[]> rows = new ArrayList<String[]>(rowCount);
+
+		for (int y = 0; y < rowCount; y++) {
+			String[] row = new String[columnCount];
+
+			for (int x = 0; x < columnCount; x++) {
+				row[x] = decode(data.getCell(y, x));
+			}
+
+			rows.add(row);
+		}
+
+		RosterBuilder builder = new RosterBuilder(rows);
+		builder._fetchTime = fetchTime;
+		builder._decodeTime = System.nanoTime() - start;
+
+		return builder;
+	}
+
+	/**
+	 * Restores the characters of a cell. The server sends UTF-8, but the connector decodes it with the platform charset, so a
+	 * cell that is not plain ASCII is turned back into its bytes and decoded as UTF-8. ASCII reads the same in both charsets
+	 * and is returned without copying.
+	 * @param cell Cell as returned by the connector.
+	 * @return Decoded cell.
+	 */
+	static String decode(String cell) {
+		if (cell == null || !DECODE_CELLS)
+			return cell;
+
+		for (int i = 0; i < cell.length(); i++) {
+			if (cell.charAt(i) >= 0x80)
+				return new String(cell.getBytes(CONNECTOR_CHARSET), StandardCharsets.UTF_8);
+		}
+
+		return cell;
+	}
+
+	/**
+	 * Applies the roster to the loaded students. New students are added to the list and the directory, students whose email or
+	 * tutor changed are updated, and codes, results and visits of known students are kept.
+	 * @param directory Directory of the loaded students.
+	 * @param students List of the loaded students.
+	 */
+	public void apply(StudentDirectory directory, ArrayList<Student> students) {
+		long start = System.nanoTime();
+
+		// every row can be a new student, so nothing is resized while the rows are added
+		students.ensureCapacity(students.size() + _rows.size());
+		directory.ensureCapacity(students.size() + _rows.size());
+
+		for (int i = 0; i < _rows.size(); i++) {
+			String[] row = _rows.get(i);
+
+			if (row.length <= TUTOR || row[NUMBER] == null) {
+				++_skipped;
+				continue;
+			}
+
+			Student known = directory.findByNumber(row[NUMBER]);
+
+			if (known == null) {
+				Student student = new Student(row[NAME], row[NUMBER], row[EMAIL], row[TUTOR]);
+				students.add(student);
+				directory.addStudent(student);
+				++_added;
+			}
+			else if (!equal(known.getEmail(), row[EMAIL]) || !equal(known.getTutor(), row[TUTOR])) {
+				directory.updateStudent(known, row[EMAIL], row[TUTOR]);
+				++_updated;
+			}
+			else {
+				++_unchanged;
+			}
+		}
+
+		_applyTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Compares two strings that can be null.
+	 */
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Gets the decoded rows, used to cache the roster.
+	 * @return Rows of the roster.
+	 */
+	public ArrayList<String[]> getRows() {
+		return _rows;
+	}
+
+	/**
+	 * Gets the time the server took to send the roster.
+	 * @return Time in nanoseconds, 0 for a roster that was not fetched.
+	 */
+	public long getFetchTime() {
+		return _fetchTime;
+	}
+
+	/**
+	 * Gets the time spent decoding cells.
+	 * @return Time in nanoseconds.
+	 */
+	public long getDecodeTime() {
+		return _decodeTime;
+	}
+
+	/**
+	 * Gets the time spent applying the roster to the loaded students.
+	 * @return Time in nanoseconds.
+	 */
+	public long getApplyTime() {
+		return _applyTime;
+	}
+
+	/**
+	 * Gets the number of students that were added.
+	 * @return Number of new students.
+	 */
+	public int getAddedCount() {
+		return _added;
+	}
+
+	/**
+	 * Gets the number of students whose email or tutor changed.
+	 * @return Number of updated students.
+	 */
+	public int getUpdatedCount() {
+		return _updated;
+	}
+
+	/**
+	 * Gets the number of students that were already up to date.
+	 * @return Number of unchanged students.
+	 */
+	public int getUnchangedCount() {
+		return _unchanged;
+	}
+
+	/**
+	 * Gets the number of rows that did not describe a student.
+	 * @return Number of skipped rows.
+	 */
+	public int getSkippedCount() {
+		return _skipped;
+	}
+
+	/**
+	 * Describes what the roster changed and how long every stage took.
+	 * @return Summary for the user.
+	 */
+	public String getSummary() {
+		return _rows.size() + " students received: " + _added + " added, " + _updated + " updated, " + _unchanged
+				+ " unchanged, " + _skipped + " skipped.\n"
+				+ String.format("Server %.1f ms, decoding %.1f ms, applying %.1f ms.", _fetchTime / 1e6, _decodeTime / 1e6, _applyTime / 1e6);
+	}
+}
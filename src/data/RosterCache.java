@@ -0,0 +1,95 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a local copy of the last student roster received from the server, so that the application can show students straight
+ * away when it starts and fetch the current roster in the background. Rows are stored exactly as the server sent them.
+ * @author Dovydas Rupsys
+ */
+public class RosterCache {
+	//Default location of the cache file
+	public static final String DEFAULT_PATH = System.getProperty("user.dir").replaceAll("\\\\", "/") + "/res/roster.bin";
+
+	private static final int MAGIC = 0x524f5354;					//Marks the beginning of a roster cache file ("ROST")
+	private static final int VERSION = 1;							//Version of the file layout, increased whenever the layout changes
+
+	/**
+	 * Writes roster rows to a file.
+	 * @param file File to be written.
+	 * @param rows Rows of the roster, every row holds the cells of one student.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void save(File file, List<String[]> rows) throws IOException {
+		// writes to a temporary file first, so that a failed save does not destroy the previous copy
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(rows.size());
+
+			for (int i = 0; i < rows.size(); i++) {
+				String[] row = rows.get(i);
+				out.writeInt(row.length);
+
+				for (int j = 0; j < row.length; j++) {
+					out.writeBoolean(row[j] != null);
+					if (row[j] != null)
+						out.writeUTF(row[j]);
+				}
+			}
+		}
+
+		if (file.exists() && !file.delete())
+			throw new IOException("Could not replace " + file.getPath());
+		if (!temp.renameTo(file))
+			throw new IOException("Could not create " + file.getPath());
+	}
+
+	/**
+	 * Reads roster rows from a file.
+	 * @param file File to be read.
+	 * @return Rows of the roster or null if there is no cached roster.
+	 * @throws IOException If the file could not be read or is damaged.
+	 */
+	public static ArrayList<String[]> load(File file) throws IOException {
+		if (!file.exists())
+			return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file.getName() + " is not a roster cache.");
+			if (in.readInt() != VERSION)
+				throw new IOException(file.getName() + " was saved by a different version of the application.");
+
+			int rowCount = in.readInt();
+			ArrayList<String[]> rows = new ArrayList<String[]>(Math.max(0, Math.min(rowCount, 1 << 16)));
+
+			for (int i = 0; i < rowCount; i++) {
+				String[] row = new String[in.readInt()];
+
+				for (int j = 0; j < row.length; j++) {
+					if (in.readBoolean())
+						row[j] = in.readUTF();
+				}
+
+				rows.add(row);
+			}
+
+			return rows;
+		} catch (EOFException | RuntimeException e) {
+			// a truncated file ends early, a damaged one can have impossible lengths
+			throw new IOException(file.getName() + " is damaged.", e);
+		}
+	}
+}
@@ -0,0 +1,407 @@
+package data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Saves the state of a session, students with their codes, results and visits, loaded assessments and the import history, to
+ * a binary file and restores it. Every distinct string is written once to a string table and referenced by its index, and the
+ * file is read back into one buffer with a single read, so large sessions are restored quickly. The file is not kept open or
+ * mapped after it was read, so it can be replaced by the next save.
+ * @author Dovydas Rupsys
+ */
+public class SessionSnapshot {
+	//Default location of the snapshot file
+	public static final String DEFAULT_PATH = System.getProperty("user.dir").replaceAll("\\\\", "/") + "/res/session.bin";
+
+	private static final int MAGIC = 0x53455353;					//Marks the beginning of a snapshot file ("SESS")
+	private static final int VERSION = 3;							//Version of the file layout, increased whenever the layout changes
+	private static final int NO_STRING = -1;						//Index written instead of null strings
+
+	private ArrayList<Student> _students;							//Restored students
+	private ArrayList<Assessment> _assessments;						//Restored assessments
+	private ImportHistory _importHistory;							//Restored row fingerprints of imported files
+
+	/**
+	 * Collects distinct strings while a snapshot is written.
+	 */
+	private static class StringTable {
+		private HashMap<String, Integer> _indexes = new HashMap<String, Integer>();
+		private ArrayList<String> _strings = new ArrayList<String>();
+
+		/**
+		 * Gets the index of a string, adding it to the table if needed.
+		 * @param value String to be written.
+		 * @return Index of the string.
+		 */
+		public int indexOf(String value) {
+			if (value == null)
+				return NO_STRING;
+
+			Integer index = _indexes.get(value);
+			if (index == null) {
+				index = _strings.size();
+				_indexes.put(value, index);
+				_strings.add(value);
+			}
+
+			return index;
+		}
+
+		/**
+		 * Writes all strings of the table.
+		 * @param out Stream to be written to.
+		 * @throws IOException
+		 */
+		public void write(DataOutputStream out) throws IOException {
+			out.writeInt(_strings.size());
+
+			for (int i = 0; i < _strings.size(); i++) {
+				byte[] bytes = _strings.get(i).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Constructs a snapshot from restored data.
+	 */
+	private SessionSnapshot(ArrayList<Student> students, ArrayList<Assessment> assessments, ImportHistory importHistory) {
+		_students = students;
+		_assessments = assessments;
+		_importHistory = importHistory;
+	}
+
+	/**
+	 * Writes the session to a file.
+	 * @param file File to be written.
+	 * @param students Students of the session.
+	 * @param assessments Assessments loaded in the session.
+	 * @param importHistory Row fingerprints of the imported files.
+	 * @throws IOException If the file could not be written.
+	 */
+	public static void save(File file, ArrayList<Student> students, ArrayList<Assessment> assessments, ImportHistory importHistory)
+			throws IOException {
+		StringTable strings = new StringTable();
+
+		// writes the data first, so that the string table is complete when it is written in front of the data
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		body.writeInt(students.size());
+		for (int i = 0; i < students.size(); i++) {
+			writeStudent(body, strings, students.get(i));
+		}
+
+		body.writeInt(assessments.size());
+		for (int i = 0; i < assessments.size(); i++) {
+			writeAssessment(body, strings, assessments.get(i));
+		}
+
+		// fingerprints refer to assessments by their position in the list
+		IdentityHashMap<Assessment, Integer> assessmentIndexes = new IdentityHashMap<Assessment, Integer>();
+		for (int i = 0; i < assessments.size(); i++) {
+			assessmentIndexes.put(assessments.get(i), i);
+		}
+
+		ArrayList<ImportFingerprint> fingerprints = importHistory.getFingerprints();
+		body.writeInt(fingerprints.size());
+		for (int i = 0; i < fingerprints.size(); i++) {
+			writeFingerprint(body, strings, assessmentIndexes, fingerprints.get(i));
+		}
+
+		body.flush();
+
+		// writes to a temporary file first, so that a failed save does not destroy the previous snapshot
+		File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			strings.write(out);
+			bodyBytes.writeTo(out);
+		}
+
+		// the previous snapshot is replaced in one step, so there is always a complete snapshot on disk
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes a student with his codes, results and visits.
+	 */
+	private static void writeStudent(DataOutputStream out, StringTable strings, Student student) throws IOException {
+		out.writeInt(strings.indexOf(student.getName()));
+		out.writeInt(strings.indexOf(student.getNumber()));
+		out.writeInt(strings.indexOf(student.getEmail()));
+		out.writeInt(strings.indexOf(student.getTutor()));
+
+		out.writeInt(student.getAnonymousCodeCount());
+		for (int i = 0; i < student.getAnonymousCodeCount(); i++) {
+			out.writeInt(strings.indexOf(student.getAnonymousCode(i)));
+		}
+
+		out.writeInt(student.getStudentResultsSize());
+		for (int i = 0; i < student.getStudentResultsSize(); i++) {
+			StudentResult result = student.getStudentResult(i);
+			out.writeInt(strings.indexOf(result.getAssessmentName()));
+			out.writeFloat(result.getMarkValue());
+			out.writeInt(strings.indexOf(result.getMarkText()));
+			out.writeInt(strings.indexOf(result.getGrade()));
+		}
+
+		out.writeInt(student.getUnitVisitedCount());
+		for (UnitVisit visit : student.getUnitVisits()) {
+			out.writeInt(strings.indexOf(visit.getModule()));
+			out.writeInt(strings.indexOf(visit.getEmail()));
+			out.writeInt(strings.indexOf(visit.getTime()));
+			out.writeInt(strings.indexOf(visit.getTown()));
+			out.writeInt(strings.indexOf(visit.getCountry()));
+			out.writeLong(visit.getLastAccess());
+		}
+	}
+
+	/**
+	 * Writes an assessment with all of its results.
+	 */
+	private static void writeAssessment(DataOutputStream out, StringTable strings, Assessment assessment) throws IOException {
+		out.writeInt(strings.indexOf(assessment.getModuleName()));
+		out.writeInt(strings.indexOf(assessment.getAssessmentName()));
+
+		out.writeInt(assessment.getResultsSize());
+		for (int i = 0; i < assessment.getResultsSize(); i++) {
+			Result result = assessment.getResult(i);
+			out.writeInt(strings.indexOf(result.getCandidateKey()));
+			out.writeInt(strings.indexOf(result.getCandidateName()));
+			out.writeFloat(result.getMarkValue());
+			out.writeInt(strings.indexOf(result.getMark()));
+			out.writeInt(strings.indexOf(result.getGrade()));
+		}
+	}
+
+	/**
+	 * Writes the row fingerprints of an imported file.
+	 */
+	private static void writeFingerprint(DataOutputStream out, StringTable strings, IdentityHashMap<Assessment, Integer> assessmentIndexes,
+			ImportFingerprint fingerprint) throws IOException {
+		out.writeInt(strings.indexOf(fingerprint.getPath()));
+		out.writeLong(fingerprint.getLength());
+		out.writeLong(fingerprint.getLastModified());
+
+		out.writeInt(fingerprint.size());
+		for (int slot = 0; slot < fingerprint.getCapacity(); slot++) {
+			if (fingerprint.getId(slot) == 0)
+				continue;
+
+			Integer assessment = assessmentIndexes.get(fingerprint.getAssessment(slot));
+			out.writeLong(fingerprint.getId(slot));
+			out.writeLong(fingerprint.getHash(slot));
+			out.writeInt(assessment != null ? assessment : -1);
+			out.writeInt(strings.indexOf(fingerprint.getKey(slot)));
+		}
+	}
+
+	/**
+	 * Reads a session from a file.
+	 * @param file File to be read.
+	 * @return The restored session.
+	 * @throws IOException If the file could not be read or is not a snapshot of a supported version.
+	 */
+	public static SessionSnapshot load(File file) throws IOException {
+		ByteBuffer in;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			// the file is read into the heap rather than mapped, a mapping would keep the file locked until it is collected
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException(file.getName() + " is too large to be a session snapshot.");
+
+			in = ByteBuffer.allocate((int)channel.size());
+			while (in.hasRemaining()) {
+				if (channel.read(in) == -1)
+					throw new EOFException(file.getName() + " ended while it was read.");
+			}
+			in.flip();
+		}
+
+		try {
+
+			if (in.remaining() < 8 || in.getInt() != MAGIC)
+				throw new IOException(file.getName() + " is not a session snapshot.");
+			if (in.getInt() != VERSION)
+				throw new IOException(file.getName() + " was saved by a different version of the application.");
+
+			String[] strings = readStrings(in);
+
+			int studentCount = in.getInt();
+			ArrayList<Student> students = new ArrayList<Student>(studentCount);
+			for (int i = 0; i < studentCount; i++) {
+				students.add(readStudent(in, strings));
+			}
+
+			int assessmentCount = in.getInt();
+			ArrayList<Assessment> assessments = new ArrayList<Assessment>(assessmentCount);
+			for (int i = 0; i < assessmentCount; i++) {
+				assessments.add(readAssessment(in, strings));
+			}
+
+			ImportHistory importHistory = new ImportHistory();
+			int fileCount = in.getInt();
+			for (int i = 0; i < fileCount; i++) {
+				importHistory.add(readFingerprint(in, strings, assessments));
+			}
+
+			return new SessionSnapshot(students, assessments, importHistory);
+		} catch (RuntimeException e) {
+			// a truncated or damaged file shows up as a buffer or index error
+			throw new IOException(file.getName() + " is damaged.", e);
+		}
+	}
+
+	/**
+	 * Reads the string table.
+	 */
+	private static String[] readStrings(ByteBuffer in) {
+		String[] strings = new String[in.getInt()];
+		byte[] bytes = new byte[256];
+
+		for (int i = 0; i < strings.length; i++) {
+			int length = in.getInt();
+			if (length > bytes.length)
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+
+			in.get(bytes, 0, length);
+			strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+
+		return strings;
+	}
+
+	/**
+	 * Gets a string by the index that was written.
+	 */
+	private static String string(String[] strings, int index) {
+		return index == NO_STRING ? null : strings[index];
+	}
+
+	/**
+	 * Reads a student with his codes, results and visits.
+	 */
+	private static Student readStudent(ByteBuffer in, String[] strings) {
+		String name = string(strings, in.getInt());
+		String number = string(strings, in.getInt());
+		String email = string(strings, in.getInt());
+		String tutor = string(strings, in.getInt());
+		Student student = new Student(name, number, email, tutor);
+
+		int codeCount = in.getInt();
+		for (int i = 0; i < codeCount; i++) {
+			student.addAnonymousCode(string(strings, in.getInt()));
+		}
+
+		int resultCount = in.getInt();
+		for (int i = 0; i < resultCount; i++) {
+			int assessment = ResultStore.ASSESSMENT_NAMES.encode(string(strings, in.getInt()));
+			float mark = in.getFloat();
+			String markText = string(strings, in.getInt());
+			int grade = ResultStore.GRADES.encode(string(strings, in.getInt()));
+			student.addResult(new StudentResult(assessment, mark, markText, grade));
+		}
+
+		int visitCount = in.getInt();
+		for (int i = 0; i < visitCount; i++) {
+			String module = string(strings, in.getInt());
+			String visitEmail = string(strings, in.getInt());
+			String time = string(strings, in.getInt());
+			String town = string(strings, in.getInt());
+			String country = string(strings, in.getInt());
+			long lastAccess = in.getLong();
+			student.addLastVisit(new UnitVisit(module, visitEmail, time, town, country, lastAccess));
+		}
+
+		return student;
+	}
+
+	/**
+	 * Reads an assessment with all of its results.
+	 */
+	private static Assessment readAssessment(ByteBuffer in, String[] strings) {
+		Assessment assessment = new Assessment(string(strings, in.getInt()), string(strings, in.getInt()));
+
+		int resultCount = in.getInt();
+		for (int i = 0; i < resultCount; i++) {
+			String key = string(strings, in.getInt());
+			String name = string(strings, in.getInt());
+			float mark = in.getFloat();
+			String markText = string(strings, in.getInt());
+			int grade = ResultStore.GRADES.encode(string(strings, in.getInt()));
+			assessment.addResult(key, name, mark, markText, grade);
+		}
+
+		return assessment;
+	}
+
+	/**
+	 * Reads the row fingerprints of an imported file.
+	 */
+	private static ImportFingerprint readFingerprint(ByteBuffer in, String[] strings, ArrayList<Assessment> assessments) {
+		String path = string(strings, in.getInt());
+		long length = in.getLong();
+		long lastModified = in.getLong();
+
+		int rowCount = in.getInt();
+		ImportFingerprint fingerprint = new ImportFingerprint(rowCount);
+		fingerprint.setSource(path, length, lastModified);
+
+		for (int i = 0; i < rowCount; i++) {
+			long id = in.getLong();
+			long hash = in.getLong();
+			int assessment = in.getInt();
+			String key = string(strings, in.getInt());
+			fingerprint.put(id, hash, assessment == -1 ? null : assessments.get(assessment), key);
+		}
+
+		return fingerprint;
+	}
+
+	/**
+	 * Gets the restored students.
+	 * @return List of students.
+	 */
+	public ArrayList<Student> getStudents() {
+		return _students;
+	}
+
+	/**
+	 * Gets the restored assessments.
+	 * @return List of assessments.
+	 */
+	public ArrayList<Assessment> getAssessments() {
+		return _assessments;
+	}
+
+	/**
+	 * Gets the restored import history.
+	 * @return Row fingerprints of the imported files.
+	 */
+	public ImportHistory getImportHistory() {
+		return _importHistory;
+	}
+}
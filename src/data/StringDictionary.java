@@ -0,0 +1,80 @@
+package data;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small integer codes to strings, so that values that repeat many times, like grades or module names, are stored once
+ * and referenced by code. Codes never change once assigned. Safe to use from several threads.
+ * @author Dovydas Rupsys
+ */
+public class StringDictionary {
+	private ConcurrentHashMap<String, Integer> _codes;				//Maps strings to their codes
+	private volatile String[] _values;								//Strings indexed by their codes
+	private int _size;												//Number of strings in the dictionary
+
+	/**
+	 * Constructs an empty dictionary.
+	 */
+	public StringDictionary() {
+		_codes = new ConcurrentHashMap<String, Integer>();
+		_values = new String[16];
+		_size = 0;
+	}
+
+	/**
+	 * Gets the code of a string, adding the string to the dictionary if it is not there yet.
+	 * @param value String to be encoded.
+	 * @return Code of the string.
+	 */
+	public int encode(String value) {
+		Integer code = _codes.get(value);
+		if (code != null)
+			return code;
+
+		synchronized (this) {
+			// some other thread could have added the string in the meantime
+			code = _codes.get(value);
+			if (code != null)
+				return code;
+
+			// the array is filled before the code is published, so readers that got the code can always decode it
+			String[] values = _values;
+			if (_size == values.length)
+				values = Arrays.copyOf(values, values.length * 2);
+			values[_size] = value;
+			_values = values;
+
+			code = _size++;
+			_codes.put(value, code);
+		}
+
+		return code;
+	}
+
+	/**
+	 * Gets the string of a code.
+	 * @param code Code returned by encode.
+	 * @return The string that was encoded.
+	 */
+	public String decode(int code) {
+		return _values[code];
+	}
+
+	/**
+	 * Gets the copy of a string that is stored in the dictionary, so that equal strings share one object.
+	 * @param value String to be interned.
+	 * @return Stored copy of the string.
+	 */
+	public String intern(String value) {
+		return decode(encode(value));
+	}
+
+	/**
+	 * Gets the number of strings in the dictionary.
+	 * @return Number of strings.
+	 */
+	public int size() {
+		return _size;
+	}
+}
@@ -1,6 +1,9 @@
 package data;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 
 /**
  * Class to create student object.
@@ -14,7 +17,8 @@ public class Student {
 		private	String _tutor;											//Stores name of the student's tutor
 		private ArrayList<String> _anonymous_code;						//Will contain student's anonymous marking codes 
 		private ArrayList<StudentResult> _results;						//Stores the student's results of all as assessments
-		private ArrayList<UnitVisit> _lastVisits;						//Stores all known unit visits
+		private LinkedHashMap<String, UnitVisit> _lastVisits;			//Stores the last visit of every module, by module name
+		private long _contentHash;										//Hash of the details, results and visits, 0 until it is computed
 		
 		/**
 		 * Constructs student's object.
@@ -30,22 +34,18 @@ public class Student {
 			_tutor = tutor;
 			_anonymous_code = new ArrayList<String>();
 			_results = new ArrayList<StudentResult>();
-			_lastVisits = new ArrayList<UnitVisit>();
+			_lastVisits = new LinkedHashMap<String, UnitVisit>();
 		}
 		
 		/**
-		 * Adds participation data to the list of visits or updates old data if it exists.
+		 * Adds participation data to the list of visits or replaces the visit of the same module if it exists. A replaced visit
+		 * keeps its place in the list.
 		 * @param v Data to be added.
+		 * @return The visit of the same module that was replaced or null.
 		 */
-		public void addLastVisit(UnitVisit v){
-			int vIndex = _lastVisits.indexOf(v);
-			
-			if (vIndex != -1){
-				_lastVisits.remove(vIndex);
-				_lastVisits.add(vIndex, v);
-			}
-			else
-				_lastVisits.add(v);
+		public UnitVisit addLastVisit(UnitVisit v){
+			_contentHash = 0;
+			return _lastVisits.put(v.getModule(), v);
 		}
 		
 		/**
@@ -57,12 +57,20 @@ public class Student {
 		}
 		
 		/**
-		 * Gets the specified unit visit.
-		 * @param index Visit to be retrieved.
-		 * @return Visit object.
+		 * Gets the last visits of all modules.
+		 * @return Read only collection of visits in the order the modules were first visited.
+		 */
+		public Collection<UnitVisit> getUnitVisits(){
+			return Collections.unmodifiableCollection(_lastVisits.values());
+		}
+		
+		/**
+		 * Gets the last visit of a module.
+		 * @param module Name of the module.
+		 * @return Visit object or null if the student has no visit of the module.
 		 */
-		public UnitVisit getUnitVisited(int index){
-			return _lastVisits.get(index);
+		public UnitVisit getUnitVisit(String module){
+			return _lastVisits.get(module);
 		}
 		
 		/**
@@ -70,8 +78,23 @@ public class Student {
 		 * @param result Student result object to be added.
 		 */
 		public void addResult(StudentResult result){
-			if (!_results.contains(result))
+			if (!_results.contains(result)) {
 				_results.add(result);
+				_contentHash = 0;
+			}
+		}
+		
+		/**
+		 * Removes the results of an assessment from the list of results.
+		 * @param assessment Assessment whose results are removed.
+		 */
+		public void removeResults(Assessment assessment){
+			for (int i = _results.size() - 1; i >= 0; i--) {
+				if (_results.get(i).getAssessmentCode() == assessment.getNameCode()) {
+					_results.remove(i);
+					_contentHash = 0;
+				}
+			}
 		}
 		
 		/**
@@ -100,22 +123,20 @@ public class Student {
 		}
 		
 		/**
-		 * Checks if provided anonymous code is assigned to this student.
-		 * @param anonymousCode Anonymous code to be searched.
-		 * @return Real students id if anonymous marking code was found, otherwise empty string.
+		 * Gets the number of anonymous marking codes assigned to this student.
+		 * @return Number of codes.
 		 */
-		public String deAnonymiseCode(String anonymousCode){
-			//If anonymous code is the id of the student then return it
-			if (anonymousCode.equals(_id))
-				return _id;
-			
-			//If anonymous code was found in the list of codes then return students id
-			for (int i = 0; i < _anonymous_code.size(); i++) {
-				if (_anonymous_code.get(i).equals(anonymousCode))
-					return _id;
-			}
-			
-			return "";
+		public int getAnonymousCodeCount(){
+			return _anonymous_code.size();
+		}
+		
+		/**
+		 * Gets the specified anonymous marking code.
+		 * @param index Position on the list.
+		 * @return Anonymous marking code in the specified position.
+		 */
+		public String getAnonymousCode(int index){
+			return _anonymous_code.get(index);
 		}
 		
 		/**
@@ -150,6 +171,56 @@ public class Student {
 			return _tutor;
 		}
 		
+		/**
+		 * Sets the email of the student. Use StudentDirectory.updateStudent for students that are in a directory.
+		 * @param email New email address.
+		 */
+		void setEmail(String email) {
+			_email = email;
+			_contentHash = 0;
+		}
+		
+		/**
+		 * Sets the name of student's tutor. Use StudentDirectory.updateStudent for students that are in a directory.
+		 * @param tutor New name of the tutor.
+		 */
+		void setTutor(String tutor) {
+			_tutor = tutor;
+			_contentHash = 0;
+		}
+		
+		/**
+		 * Gets a hash of everything that is shown about the student: the details, the results and the last visits. The hash is
+		 * kept until one of them changes.
+		 * @return Hash of the student's content, never 0.
+		 */
+		public long getContentHash() {
+			if (_contentHash != 0)
+				return _contentHash;
+			
+			long hash = ImportFingerprint.hash(ImportFingerprint.FNV_OFFSET, _name);
+			hash = ImportFingerprint.hash(hash, _id);
+			hash = ImportFingerprint.hash(hash, String.valueOf(_email));
+			hash = ImportFingerprint.hash(hash, String.valueOf(_tutor));
+			
+			for (int i = 0; i < _results.size(); i++) {
+				StudentResult result = _results.get(i);
+				hash = ImportFingerprint.hash(hash, result.getAssessmentName());
+				hash = ImportFingerprint.hash(hash, result.getMarkText());
+				hash = ImportFingerprint.hash(hash, String.valueOf(result.getGrade()));
+			}
+			
+			for (UnitVisit visit : _lastVisits.values()) {
+				hash = ImportFingerprint.hash(hash, visit.getModule());
+				hash = ImportFingerprint.hash(hash, String.valueOf(visit.getTown()));
+				hash = ImportFingerprint.hash(hash, String.valueOf(visit.getCountry()));
+				hash = ImportFingerprint.hash(hash, String.valueOf(visit.getTime()));
+			}
+			
+			_contentHash = hash == 0 ? 1 : hash;
+			return _contentHash;
+		}
+		
 		/**
 		 * Creates a string that represents the student.  
 		 */
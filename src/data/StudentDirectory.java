@@ -0,0 +1,196 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+/**
+ * Indexes students by their student number, email address and anonymous marking codes, so that students can be found by an
+ * exact key without searching through every student. Students are also added to a trigram index for fuzzy search and to an
+ * index of the last time they visited every module.
+ * @author Dovydas Rupsys
+ */
+public class StudentDirectory {
+	private HashMap<String, Student> _byNumber;						//Maps student numbers to students
+	private HashMap<String, Student> _byEmail;						//Maps lower case email addresses to students
+	private HashMap<String, Student> _byCode;						//Maps anonymous marking codes to students
+	private StudentSearchIndex _search;								//Finds students by approximate name, number, email or tutor
+	private ParticipationIndex _participation;						//Finds students by the last time they visited a module
+	private int _capacity;											//Number of students the maps were sized for
+
+	/**
+	 * Constructs an empty directory.
+	 */
+	public StudentDirectory() {
+		_byNumber = new HashMap<String, Student>();
+		_byEmail = new HashMap<String, Student>();
+		_byCode = new HashMap<String, Student>();
+		_search = new StudentSearchIndex();
+		_participation = new ParticipationIndex();
+	}
+
+	/**
+	 * Adds a student and the anonymous codes he already has to the directory.
+	 * @param student Student to be added.
+	 */
+	public void addStudent(Student student) {
+		_byNumber.put(student.getNumber(), student);
+
+		if (student.getEmail() != null)
+			_byEmail.put(student.getEmail().toLowerCase(), student);
+
+		for (int i = 0; i < student.getAnonymousCodeCount(); i++) {
+			indexCode(student.getAnonymousCode(i), student);
+		}
+
+		_search.addStudent(student);
+
+		for (UnitVisit visit : student.getUnitVisits()) {
+			_participation.update(student, null, visit);
+		}
+	}
+
+	/**
+	 * Adds a unit visit to a student in the directory, replacing the student's previous visit of the module.
+	 * @param student Student that was added to the directory.
+	 * @param visit Visit to be added.
+	 */
+	public void addVisit(Student student, UnitVisit visit) {
+		_participation.update(student, student.addLastVisit(visit), visit);
+	}
+
+	/**
+	 * Finds the students that did not visit a module for a number of days.
+	 * @param module Name of the module.
+	 * @param days Number of days.
+	 * @param now Current time in milliseconds since the epoch.
+	 * @return Students whose last visit was more than that many days ago, those inactive for the longest time first.
+	 */
+	public ArrayList<Student> findInactive(String module, int days, long now) {
+		return _participation.findInactive(module, now - days * UnitVisit.DAY);
+	}
+
+	/**
+	 * Gets the modules that participation data was loaded for.
+	 * @return Sorted module names.
+	 */
+	public TreeSet<String> getParticipationModules() {
+		return _participation.getModules();
+	}
+
+	/**
+	 * Sizes the indexes for a number of students, so that adding them does not resize the maps one step at a time.
+	 * @param students Number of students the directory will hold.
+	 */
+	public void ensureCapacity(int students) {
+		if (students <= _capacity)
+			return;
+
+		_capacity = students;
+		_byNumber = resize(_byNumber, students);
+		_byEmail = resize(_byEmail, students);
+		_byCode = resize(_byCode, students);
+		_search.ensureCapacity(students);
+	}
+
+	/**
+	 * Copies a map into a map with room for a number of entries.
+	 */
+	private static HashMap<String, Student> resize(HashMap<String, Student> map, int entries) {
+		HashMap<String, Student> resized = new HashMap<String, Student>((int)(entries / 0.75f) + 1);
+		resized.putAll(map);
+
+		return resized;
+	}
+
+	/**
+	 * Changes the email address and tutor of a student in the directory, keeping the indexes up to date.
+	 * @param student Student that was added to the directory.
+	 * @param email New email address.
+	 * @param tutor New name of the tutor.
+	 */
+	public void updateStudent(Student student, String email, String tutor) {
+		String oldEmail = student.getEmail();
+		String oldTutor = student.getTutor();
+
+		if (oldEmail != null && _byEmail.get(oldEmail.toLowerCase()) == student)
+			_byEmail.remove(oldEmail.toLowerCase());
+
+		student.setEmail(email);
+		student.setTutor(tutor);
+
+		if (email != null)
+			_byEmail.put(email.toLowerCase(), student);
+
+		_search.updateStudent(student, oldEmail, oldTutor);
+	}
+
+	/**
+	 * Assigns an anonymous marking code to a student and adds that code to the directory.
+	 * @param student Student the code belongs to.
+	 * @param anonymousCode Code to be assigned.
+	 */
+	public void addAnonymousCode(Student student, String anonymousCode) {
+		student.addAnonymousCode(anonymousCode);
+		indexCode(anonymousCode, student);
+	}
+
+	/**
+	 * Adds a code to the code index. If the code was already assigned to some other student that student keeps it.
+	 * @param anonymousCode Code to be indexed.
+	 * @param student Student the code belongs to.
+	 */
+	private void indexCode(String anonymousCode, Student student) {
+		if (!_byCode.containsKey(anonymousCode))
+			_byCode.put(anonymousCode, student);
+	}
+
+	/**
+	 * Finds a student by his student number.
+	 * @param number Student number.
+	 * @return Student with that number or null if there is no such student.
+	 */
+	public Student findByNumber(String number) {
+		return _byNumber.get(number);
+	}
+
+	/**
+	 * Finds a student by his email address. Letter case is ignored.
+	 * @param email Email address of the student.
+	 * @return Student with that email or null if there is no such student.
+	 */
+	public Student findByEmail(String email) {
+		return _byEmail.get(email.toLowerCase());
+	}
+
+	/**
+	 * Finds a student by one of his anonymous marking codes.
+	 * @param anonymousCode Anonymous marking code.
+	 * @return Student the code was assigned to or null if the code is not known.
+	 */
+	public Student findByCode(String anonymousCode) {
+		return _byCode.get(anonymousCode);
+	}
+
+	/**
+	 * Gets the trigram index of the students, in the order they were added.
+	 * @return Fuzzy search index.
+	 */
+	public StudentSearchIndex getSearchIndex() {
+		return _search;
+	}
+
+	/**
+	 * Finds the student a candidate key belongs to. The key can be a student number or an anonymous marking code.
+	 * @param candidateKey Candidate key of a result.
+	 * @return Student the key belongs to or null if the key did not match any student.
+	 */
+	public Student deAnonymise(String candidateKey) {
+		Student student = _byNumber.get(candidateKey);
+
+		if (student == null)
+			student = _byCode.get(candidateKey);
+
+		return student;
+	}
+}
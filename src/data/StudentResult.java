@@ -5,68 +5,111 @@ package data;
  * @author Dovydas Rupsys
  */
 public class StudentResult {
-	private String _assessment;						//unit name and the assessment number
-	private String _mark;							//mark achieved on the assessment
-	private String _grade;							//grade achieved on the assessment
-	
+	private int _assessment;						//dictionary code of the unit name and the assessment number
+	private float _mark;							//mark achieved on the assessment, ResultStore.NO_MARK if it is not a number
+	private String _markText;						//original text of the mark, only kept if formatMark does not restore it
+	private int _grade;								//dictionary code of the grade achieved on the assessment
+
 	/**
 	 * Constructs student's result object.
 	 * @param assessment Unit name and the assessment number.
 	 * @param mark Mark achieved on the assessment.
+	 * @param grade Grade achieved on the assessment.
 	 */
 	public StudentResult(String assessment, String mark, String grade){
+		this(ResultStore.ASSESSMENT_NAMES.encode(assessment), ResultStore.parseMark(mark), mark, ResultStore.GRADES.encode(grade));
+	}
+
+	/**
+	 * Constructs student's result object from values that were already parsed.
+	 * @param assessment Code of the assessment name from Assessment.getNameCode.
+	 * @param mark Parsed mark.
+	 * @param markText Mark as it appears in the file.
+	 * @param grade Grade code from ResultStore.GRADES.
+	 */
+	public StudentResult(int assessment, float mark, String markText, int grade){
 		_assessment = assessment;
 		_mark = mark;
+		_markText = ResultStore.keepsText(mark, markText) ? markText : null;
 		_grade = grade;
 	}
-	
+
 	/**
 	 * Return a string with the name of the unit and assessment number.
 	 * @return Assessment name.
 	 */
 	public String getAssessmentName(){
+		return ResultStore.ASSESSMENT_NAMES.decode(_assessment);
+	}
+
+	/**
+	 * Gets the dictionary code of the assessment name.
+	 * @return Code of the assessment name.
+	 */
+	int getAssessmentCode(){
 		return _assessment;
 	}
-	
+
 	/**
 	 * Gets the mark achieved.
-	 * @return Mark in a form of integer.
+	 * @return Mark in a form of a float or null if the mark is not a number.
 	 */
 	public Float getMark() {
-		try {
-			return Float.parseFloat(_mark);
-		} catch (Exception e) {
-			return null;
-		}
+		return Float.isNaN(_mark) ? null : _mark;
+	}
+
+	/**
+	 * Gets the mark achieved without boxing it.
+	 * @return Mark or ResultStore.NO_MARK if the mark is not a number.
+	 */
+	public float getMarkValue() {
+		return _mark;
+	}
+
+	/**
+	 * Gets the mark achieved as text.
+	 * @return Mark as text.
+	 */
+	public String getMarkText() {
+		return _markText != null ? _markText : ResultStore.formatMark(_mark);
 	}
-	
+
 	/**
 	 * Get the grade achieved
 	 * @return Grade achieved
 	 */
 	public String getGrade() {
-			return _grade;
+			return ResultStore.GRADES.decode(_grade);
 	}
-		
+
 	/**
 	 * Returns string representation of the class.
 	 */
 	@Override
 	public String toString() {
-		return _assessment + " (mark " + _mark + ")";
+		return getAssessmentName() + " (mark " + getMarkText() + ")";
 	}
-	
+
 	/**
-	 * Checks if this object contains the same data as some other student results object. 
+	 * Checks if this object contains the same data as some other student results object.
 	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof StudentResult){
 			StudentResult sr = (StudentResult)obj;
-			return toString().equals(sr.toString());
+			return _assessment == sr._assessment && Float.floatToIntBits(_mark) == Float.floatToIntBits(sr._mark)
+					&& (_markText == null ? sr._markText == null : _markText.equals(sr._markText));
 		}
-		
+
 		return false;
 	}
-	
-}
\ No newline at end of file
+
+	/**
+	 * Creates a hash code from the assessment name and mark.
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * _assessment + Float.floatToIntBits(_mark);
+	}
+
+}
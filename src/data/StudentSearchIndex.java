@@ -0,0 +1,400 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+/**
+ * Inverted index of trigrams for fuzzy student search. The name, student number, email address and tutor of every student
+ * are split into words, every word is padded and cut into three character pieces, and every piece lists the students that
+ * contain it. A search counts how many pieces of the query each student shares, so misspelled names are still found, and
+ * only the students listed under the query's pieces are looked at. Students are identified by the order they were added in.
+ * The index can be searched from a background thread while students are added.
+ * @author Dovydas Rupsys
+ */
+public class StudentSearchIndex {
+	private static final double MIN_SIMILARITY = 0.5;				//Part of the query's trigrams a student must share to match
+	private static final double COMMON_FRACTION = 0.1;				//Trigrams found in more of the students than this are ignored
+	private static final int MIN_COMMON_SIZE = 1000;				//Trigrams found in fewer students than this are never ignored
+	private static final int MAX_LENGTH_RANK = 0xFF;				//Trigram counts above this rank the same
+	private static final int INITIAL_TRIGRAM_CAPACITY = 1024;		//Number of slots of the trigram table of an empty index
+
+	//orders posting lists from the shortest to the longest
+	private static final Comparator<IdList> LIST_SIZE_ORDER = new Comparator<IdList>() {
+		@Override
+		public int compare(IdList a, IdList b) {
+			return Integer.compare(a._size, b._size);
+		}
+	};
+
+	private ArrayList<Student> _students;							//Indexed students, in the order they were added
+	private IdentityHashMap<Student, Integer> _ids;					//Maps students to their identifiers
+	private long[] _trigrams;										//Open addressing table of indexed trigrams, 0 marks an empty slot
+	private IdList[] _postings;										//Students that contain the trigram in the same slot
+	private int _trigramCount;										//Number of distinct indexed trigrams
+	private int[] _lengths;											//Number of distinct trigrams of every student
+	private int[] _scores;											//Shared trigram counts, reused and cleared by every search
+	private int[] _touched;											//Students whose count was changed by the running search
+
+	/**
+	 * Growable list of student identifiers in ascending order.
+	 */
+	private static class IdList {
+		private int[] _ids = new int[4];
+		private int _size = 0;
+
+		public void add(int id) {
+			if (_size == _ids.length)
+				_ids = Arrays.copyOf(_ids, _size * 2);
+
+			_ids[_size++] = id;
+		}
+
+		public void insert(int id) {
+			int position = Arrays.binarySearch(_ids, 0, _size, id);
+			if (position >= 0)
+				return;
+
+			if (_size == _ids.length)
+				_ids = Arrays.copyOf(_ids, _size * 2);
+
+			position = -position - 1;
+			System.arraycopy(_ids, position, _ids, position + 1, _size - position);
+			_ids[position] = id;
+			++_size;
+		}
+
+		public void remove(int id) {
+			int position = Arrays.binarySearch(_ids, 0, _size, id);
+			if (position < 0)
+				return;
+
+			System.arraycopy(_ids, position + 1, _ids, position, _size - position - 1);
+			--_size;
+		}
+	}
+
+	/**
+	 * Constructs an empty index.
+	 */
+	public StudentSearchIndex() {
+		_students = new ArrayList<Student>();
+		_ids = new IdentityHashMap<Student, Integer>();
+		_trigrams = new long[INITIAL_TRIGRAM_CAPACITY];
+		_postings = new IdList[INITIAL_TRIGRAM_CAPACITY];
+		_lengths = new int[16];
+		_scores = new int[0];
+		_touched = new int[0];
+	}
+
+	/**
+	 * Cuts text into distinct trigrams. Every word is lower cased and padded with two spaces in front and one behind, so
+	 * that the beginning of a word weighs more than its end.
+	 * @param text Text to be cut.
+	 * @return Sorted trigrams, three characters packed into a long.
+	 */
+	private static long[] trigrams(String text) {
+		String folded = text.toLowerCase(Locale.ROOT);
+		long[] trigrams = new long[folded.length() + 2];
+		int count = 0;
+		char previous = ' ';
+		char beforePrevious = ' ';
+
+		for (int i = 0; i <= folded.length(); i++) {
+			char c = i < folded.length() ? folded.charAt(i) : ' ';
+
+			if (!Character.isLetterOrDigit(c)) {
+				// a word ends with a space, separators between words do not create trigrams of their own
+				if (previous != ' ')
+					trigrams[count++] = pack(beforePrevious, previous, ' ');
+
+				previous = ' ';
+				beforePrevious = ' ';
+				continue;
+			}
+
+			trigrams[count++] = pack(beforePrevious, previous, c);
+			beforePrevious = previous;
+			previous = c;
+		}
+
+		// removes duplicates
+		Arrays.sort(trigrams, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || trigrams[distinct - 1] != trigrams[i])
+				trigrams[distinct++] = trigrams[i];
+		}
+
+		return Arrays.copyOf(trigrams, distinct);
+	}
+
+	/**
+	 * Packs three characters into a number.
+	 */
+	private static long pack(char first, char second, char third) {
+		return ((long)first << 32) | ((long)second << 16) | third;
+	}
+
+	/**
+	 * Cuts the searchable fields of a student into trigrams.
+	 * @return Sorted distinct trigrams of all fields that are not null.
+	 */
+	private static long[] trigrams(String name, String number, String email, String tutor) {
+		StringBuilder text = new StringBuilder();
+		String[] fields = { name, number, email, tutor };
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i] != null)
+				text.append(fields[i]).append(' ');
+		}
+
+		return trigrams(text.toString());
+	}
+
+	/**
+	 * Finds the slot where a trigram is or should be stored.
+	 * @param trigram Packed trigram, never 0.
+	 * @return Index of the slot.
+	 */
+	private int findSlot(long trigram) {
+		int mask = _trigrams.length - 1;
+		long mixed = trigram * 0x9e3779b97f4a7c15L;
+		int slot = (int)(mixed >>> 32) & mask;
+
+		// linear probing until the trigram or an empty slot is found
+		while (_trigrams[slot] != 0 && _trigrams[slot] != trigram) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Finds the students that contain a trigram.
+	 * @param trigram Packed trigram.
+	 * @return List of students or null if no student contains the trigram.
+	 */
+	private IdList findPostings(long trigram) {
+		return _postings[findSlot(trigram)];
+	}
+
+	/**
+	 * Finds the students that contain a trigram, adding an empty list for a trigram that was not indexed yet.
+	 * @param trigram Packed trigram.
+	 * @return List of students.
+	 */
+	private IdList addPostings(long trigram) {
+		int slot = findSlot(trigram);
+		if (_postings[slot] != null)
+			return _postings[slot];
+
+		// doubles the table when it is half full
+		if (_trigramCount * 2 >= _trigrams.length) {
+			long[] trigrams = _trigrams;
+			IdList[] postings = _postings;
+			_trigrams = new long[trigrams.length * 2];
+			_postings = new IdList[trigrams.length * 2];
+
+			for (int i = 0; i < trigrams.length; i++) {
+				if (trigrams[i] == 0)
+					continue;
+
+				int moved = findSlot(trigrams[i]);
+				_trigrams[moved] = trigrams[i];
+				_postings[moved] = postings[i];
+			}
+
+			slot = findSlot(trigram);
+		}
+
+		_trigrams[slot] = trigram;
+		_postings[slot] = new IdList();
+		++_trigramCount;
+
+		return _postings[slot];
+	}
+
+	/**
+	 * Adds a student to the index.
+	 * @param student Student to be added.
+	 */
+	public synchronized void addStudent(Student student) {
+		int id = _students.size();
+		_students.add(student);
+		_ids.put(student, id);
+
+		long[] trigrams = trigrams(student.getName(), student.getNumber(), student.getEmail(), student.getTutor());
+
+		if (id == _lengths.length)
+			_lengths = Arrays.copyOf(_lengths, id * 2);
+		_lengths[id] = trigrams.length;
+
+		for (int i = 0; i < trigrams.length; i++) {
+			addPostings(trigrams[i]).add(id);
+		}
+	}
+
+	/**
+	 * Sizes the index for a number of students.
+	 * @param students Number of students the index will hold.
+	 */
+	public synchronized void ensureCapacity(int students) {
+		if (students <= _lengths.length)
+			return;
+
+		_students.ensureCapacity(students);
+		_lengths = Arrays.copyOf(_lengths, students);
+
+		IdentityHashMap<Student, Integer> ids = new IdentityHashMap<Student, Integer>(students);
+		ids.putAll(_ids);
+		_ids = ids;
+	}
+
+	/**
+	 * Indexes the current email address and tutor of a student instead of the previous ones. The student keeps his identifier.
+	 * @param student Student that was added to the index before.
+	 * @param oldEmail Email address the student was indexed with.
+	 * @param oldTutor Tutor the student was indexed with.
+	 */
+	public synchronized void updateStudent(Student student, String oldEmail, String oldTutor) {
+		Integer id = _ids.get(student);
+		if (id == null)
+			return;
+
+		long[] oldTrigrams = trigrams(student.getName(), student.getNumber(), oldEmail, oldTutor);
+		long[] trigrams = trigrams(student.getName(), student.getNumber(), student.getEmail(), student.getTutor());
+
+		// only the trigrams that differ are moved, both arrays are sorted
+		for (int i = 0; i < oldTrigrams.length; i++) {
+			IdList ids = findPostings(oldTrigrams[i]);
+			if (ids != null && Arrays.binarySearch(trigrams, oldTrigrams[i]) < 0)
+				ids.remove(id);
+		}
+
+		for (int i = 0; i < trigrams.length; i++) {
+			if (Arrays.binarySearch(oldTrigrams, trigrams[i]) >= 0)
+				continue;
+
+			addPostings(trigrams[i]).insert(id);
+		}
+
+		_lengths[id] = trigrams.length;
+	}
+
+	/**
+	 * Finds students that share most trigrams with a query.
+	 * @param query Text typed by the user.
+	 * @param limit Largest number of students returned.
+	 * @return Identifiers of the matching students, the best match first.
+	 */
+	public synchronized int[] search(String query, int limit) {
+		long[] trigrams = trigrams(query);
+		if (trigrams.length == 0)
+			return new int[0];
+
+		if (_scores.length < _students.size()) {
+			_scores = new int[_students.size()];
+			_touched = new int[_students.size()];
+		}
+
+		// posting lists of the query, the shortest first
+		IdList[] lists = new IdList[trigrams.length];
+		int listCount = 0;
+		for (int i = 0; i < trigrams.length; i++) {
+			IdList ids = findPostings(trigrams[i]);
+			if (ids != null)
+				lists[listCount++] = ids;
+		}
+
+		Arrays.sort(lists, 0, listCount, LIST_SIZE_ORDER);
+
+		// trigrams that most students have, like the beginning of every email address, say little about a student and are
+		// dropped, unless the query has nothing else
+		int queryLength = trigrams.length;
+		int commonSize = Math.max(MIN_COMMON_SIZE, (int)(_students.size() * COMMON_FRACTION));
+		int rare = listCount;
+		while (rare > 0 && lists[rare - 1]._size > commonSize)
+			--rare;
+
+		if (rare > 0) {
+			queryLength -= listCount - rare;
+			listCount = rare;
+		}
+
+		// a student with enough shared trigrams must be in at least one of the shortest lists, so only those are scanned for
+		// new students and the longer lists are only checked for students that were already found
+		int required = (int)Math.ceil(queryLength * MIN_SIMILARITY);
+		int scanned = Math.min(listCount, queryLength - required + 1);
+		int touched = 0;
+
+		for (int i = 0; i < scanned; i++) {
+			IdList ids = lists[i];
+
+			for (int j = 0; j < ids._size; j++) {
+				int id = ids._ids[j];
+				if (_scores[id]++ == 0)
+					_touched[touched++] = id;
+			}
+		}
+
+		for (int i = scanned; i < listCount; i++) {
+			IdList ids = lists[i];
+
+			// looking students up is cheaper than reading a long list when few students were found
+			if ((long)touched * 20 < ids._size) {
+				for (int j = 0; j < touched; j++) {
+					if (Arrays.binarySearch(ids._ids, 0, ids._size, _touched[j]) >= 0)
+						++_scores[_touched[j]];
+				}
+			}
+			else {
+				for (int j = 0; j < ids._size; j++) {
+					if (_scores[ids._ids[j]] > 0)
+						++_scores[ids._ids[j]];
+				}
+			}
+		}
+
+		// keeps students with enough shared trigrams, packed so that sorting puts high counts first, then students with less
+		// text and then the students that were added first
+		long[] ranked = new long[touched];
+		int matches = 0;
+
+		for (int i = 0; i < touched; i++) {
+			int id = _touched[i];
+
+			if (_scores[id] >= required)
+				ranked[matches++] = ((long)(queryLength - _scores[id]) << 40) | ((long)Math.min(_lengths[id], MAX_LENGTH_RANK) << 32) | id;
+
+			_scores[id] = 0;
+		}
+
+		Arrays.sort(ranked, 0, matches);
+
+		int[] result = new int[Math.min(matches, limit)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (int)ranked[i];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets a student by its identifier.
+	 * @param id Identifier returned by search, the position the student was added in.
+	 * @return The student.
+	 */
+	public synchronized Student getStudent(int id) {
+		return _students.get(id);
+	}
+
+	/**
+	 * Gets the number of indexed students.
+	 * @return Number of students.
+	 */
+	public synchronized int size() {
+		return _students.size();
+	}
+}
@@ -0,0 +1,154 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copy of everything that is shown about a student, taken at one moment. Students change on the event dispatch thread while
+ * results and participation are imported, so work that runs in the background, such as writing a pdf, reads a snapshot
+ * taken on that thread instead of the student.
+ * @author Dovydas Rupsys
+ */
+public class StudentSnapshot {
+	private String _name;											//Name of the student
+	private String _number;											//Id number of the student
+	private String _email;											//Email of the student
+	private String _tutor;											//Name of the student's tutor
+	private String[] _resultNames;									//Assessment names of the results
+	private String[] _markTexts;									//Marks of the results as they are shown
+	private String[] _grades;										//Grades of the results
+	private List<UnitVisit> _visits;								//Last visit of every module, visits do not change
+	private long _contentHash;										//Hash of the student's content when it was copied
+
+	/**
+	 * Copies a student. It must be called on the thread that changes the student.
+	 * @param student Student that is copied.
+	 */
+	public StudentSnapshot(Student student) {
+		_name = student.getName();
+		_number = student.getNumber();
+		_email = student.getEmail();
+		_tutor = student.getTutor();
+
+		int results = student.getStudentResultsSize();
+		_resultNames = new String[results];
+		_markTexts = new String[results];
+		_grades = new String[results];
+		for (int i = 0; i < results; i++) {
+			StudentResult result = student.getStudentResult(i);
+			_resultNames[i] = result.getAssessmentName();
+			_markTexts[i] = result.getMarkText();
+			_grades[i] = result.getGrade();
+		}
+
+		_visits = Collections.unmodifiableList(Arrays.asList(student.getUnitVisits().toArray(new UnitVisit[0])));
+		_contentHash = student.getContentHash();
+	}
+
+	/**
+	 * Copies a list of students. It must be called on the thread that changes the students.
+	 * @param students Students that are copied.
+	 * @return Snapshots in the order of the students.
+	 */
+	public static ArrayList<StudentSnapshot> copy(List<Student> students) {
+		ArrayList<StudentSnapshot> snapshots = new ArrayList<StudentSnapshot>(students.size());
+		for (int i = 0; i < students.size(); i++) {
+			snapshots.add(new StudentSnapshot(students.get(i)));
+		}
+
+		return snapshots;
+	}
+
+	/**
+	 * Gets the name of the student.
+	 * @return Name.
+	 */
+	public String getName() {
+		return _name;
+	}
+
+	/**
+	 * Gets the id number of the student.
+	 * @return Id number.
+	 */
+	public String getNumber() {
+		return _number;
+	}
+
+	/**
+	 * Gets the email of the student.
+	 * @return Email address.
+	 */
+	public String getEmail() {
+		return _email;
+	}
+
+	/**
+	 * Gets the name of the student's tutor.
+	 * @return Name of the tutor.
+	 */
+	public String getTutor() {
+		return _tutor;
+	}
+
+	/**
+	 * Gets the number of results.
+	 * @return Number of results.
+	 */
+	public int getResultCount() {
+		return _resultNames.length;
+	}
+
+	/**
+	 * Gets the assessment name of a result.
+	 * @param index Position of the result.
+	 * @return Assessment name.
+	 */
+	public String getResultName(int index) {
+		return _resultNames[index];
+	}
+
+	/**
+	 * Gets the mark of a result as it is shown.
+	 * @param index Position of the result.
+	 * @return Mark text, see StudentResult.getMarkText.
+	 */
+	public String getMarkText(int index) {
+		return _markTexts[index];
+	}
+
+	/**
+	 * Gets the grade of a result.
+	 * @param index Position of the result.
+	 * @return Grade.
+	 */
+	public String getGrade(int index) {
+		return _grades[index];
+	}
+
+	/**
+	 * Gets the last visits of all modules.
+	 * @return Read only list of visits in the order the modules were first visited.
+	 */
+	public List<UnitVisit> getUnitVisits() {
+		return _visits;
+	}
+
+	/**
+	 * Gets the hash of the student's content at the time it was copied, so it describes exactly what the snapshot holds.
+	 * @return Hash from Student.getContentHash.
+	 */
+	public long getContentHash() {
+		return _contentHash;
+	}
+
+	/**
+	 * Creates a string that represents the student.
+	 */
+	@Override
+	public String toString() {
+		return _name + " (" + _number + ")";
+	}
+}
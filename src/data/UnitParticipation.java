@@ -1,10 +1,11 @@
 package data;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import windows.MainWindow;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class extract students' names and their last participations from the
@@ -14,48 +15,106 @@ import windows.MainWindow;
 public class UnitParticipation {
 	private String _module; 						// the name of module this data is for
 	private ArrayList<UnitVisit> _participants; 	//the list of data in this format { student's name, town, location, time of last visit }
+	private long _scrapedAt = System.currentTimeMillis();	//the time the table was read, times since the last visit count from it
 
-	// Pattern used to match all html tags with student's email and his participation data
-	private static Pattern _rowPattern = Pattern.compile("(<td\\s*class\\s*=\\s*\"cell\\s*)(c3|c4|c5|c6)\"[^>]*>((.|\\.)*?)</td>");
-	// Pattern that matches all html tags
-	private static Pattern _htmlTagPattern = Pattern.compile("<[^>]*>");
-	
 	/**
 	 * Constructs participation object.
+	 * @param module The name of the module the table belongs to.
 	 * @param htmlTable Table to be parsed.
 	 */
 	public UnitParticipation(String module, String htmlTable) {
 		_participants = new ArrayList<UnitVisit>();
-		
-		// Ask the user to provide the module name for this object
 		_module = module;
 
-		// find all cells that contain student's name and his participation data
-		Matcher rowMatcher = _rowPattern.matcher(htmlTable);
-		while (rowMatcher.find()) {
-			//remove all html tags from the match
-			String email = _htmlTagPattern.matcher(rowMatcher.group()).replaceAll("");
+		try {
+			readParticipants(new ParticipantCellReader(new StringReader(htmlTable)));
+		} catch (IOException e) {
+			// a string reader does not fail
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Constructs participation object from html that is read as it is parsed.
+	 * @param module The name of the module the table belongs to.
+	 * @param html Source of the page or table to be parsed, it is not closed.
+	 * @throws IOException If the html could not be read.
+	 */
+	public UnitParticipation(String module, Reader html) throws IOException {
+		this(module, new ParticipantCellReader(html), System.currentTimeMillis());
+	}
+
+	/**
+	 * Constructs participation object from a source of participation cells.
+	 * @param module The name of the module the cells belong to.
+	 * @param cells Source of the cells.
+	 * @param scrapedAt Time the cells were scraped, such as the modification time of a saved page.
+	 * @throws IOException If the cells could not be read.
+	 */
+	UnitParticipation(String module, ParticipantCells cells, long scrapedAt) throws IOException {
+		_participants = new ArrayList<UnitVisit>();
+		_module = module;
+		_scrapedAt = scrapedAt;
+
+		readParticipants(cells);
+	}
+
+	/**
+	 * Constructs participation object from cells that were already read from a table.
+	 * @param module The name of the module the table belongs to.
+	 * @param cells Text of the participation cells in table order, see ParticipantTableWalker.
+	 */
+	public UnitParticipation(String module, final List<String> cells) {
+		_participants = new ArrayList<UnitVisit>();
+		_module = module;
+
+		try {
+			readParticipants(new ParticipantCells() {
+				private int _next = 0;
+
+				@Override
+				public String nextCell() {
+					return _next < cells.size() ? cells.get(_next++) : null;
+				}
+			});
+		} catch (IOException e) {
+			// a list of cells does not fail
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads the participation cells and turns every student's cells into a visit. A student's row has the email followed by
+	 * the town, the country and the time of the last visit, but town and country are left out when they are not known.
+	 * @param cells Source of the participation cells.
+	 * @throws IOException If the cells could not be read.
+	 */
+	private void readParticipants(ParticipantCells cells) throws IOException {
+		String email;
+		while ((email = cells.nextCell()) != null) {
 			String time = "";
 			String town = "";
 			String country = "";
 			
-			// if there is participation data for this student then remove all html tags from it and save it
-			if (rowMatcher.find())
-				town = _htmlTagPattern.matcher(rowMatcher.group()).replaceAll("");
+			// if there is participation data for this student then save it
+			String cell = cells.nextCell();
+			if (cell != null)
+				town = cell;
 
 			//if town and country data is not available
-			if (town.equals("now") || town.matches(".*[0-9].*")) {
+			if (isTime(town)) {
 				time = town;
 				town = " ";
 				country = " ";		
 			} 
 			
 			else{
-				if (rowMatcher.find())
-					country = _htmlTagPattern.matcher(rowMatcher.group()).replaceAll("");
+				cell = cells.nextCell();
+				if (cell != null)
+					country = cell;
 				
 				// if town is not available
-				if (country.equals("now") || country.matches(".*[0-9].*")) {
+				if (isTime(country)) {
 					time = country;
 					country = town;
 					town = " ";
@@ -63,31 +122,81 @@ public class UnitParticipation {
 				
 				// if everything is available
 				else {
-					if (rowMatcher.find())
-						time = _htmlTagPattern.matcher(rowMatcher.group()).replaceAll("");
+					cell = cells.nextCell();
+					if (cell != null)
+						time = cell;
 				}
 			}
 	
 			// if student's name and time  of last visit are not empty string
 			// then add them to the list of participants
 			if (email.length() > 0 && time.length() > 0)
-				_participants.add(new UnitVisit(_module, email, time, town, country));
+				_participants.add(new UnitVisit(_module, email, time, town, country, UnitVisit.parseLastAccess(time, _scrapedAt)));
 		}
 	}
 
 	/**
-	 * Applies participation data on the list of students.
-	 * @param students The list of students to be used.
+	 * Checks if a cell holds the time of the last visit, which is either "now", "never" or a time that contains digits.
+	 * @param cell Text of the cell.
+	 * @return true if the cell is a time.
 	 */
-	public void applyParticipantData(MainWindow window) {
+	private static boolean isTime(String cell) {
+		if (cell.equalsIgnoreCase("now") || cell.equalsIgnoreCase("never"))
+			return true;
+
+		for (int i = 0; i < cell.length(); i++) {
+			if (cell.charAt(i) >= '0' && cell.charAt(i) <= '9')
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Applies participation data on the students in the directory.
+	 * @param directory Directory used to find students by their email.
+	 */
+	public void applyParticipantData(StudentDirectory directory) {
 		for (int i = 0; i < _participants.size(); i++) {
 			UnitVisit v = _participants.get(i);
-			Student student = window.findStudentByEmail(v.getEmail());
+			Student student = directory.findByEmail(v.getEmail());
 			if (student != null)
-				student.addLastVisit(v);
+				directory.addVisit(student, v);
 		}
 	}
 
+	/**
+	 * Gets the name of the module the visits belong to.
+	 * @return Module name.
+	 */
+	public String getModule() {
+		return _module;
+	}
+
+	/**
+	 * Gets the visits that were read.
+	 * @return List of visits in table order.
+	 */
+	public List<UnitVisit> getVisits() {
+		return Collections.unmodifiableList(_participants);
+	}
+
+	/**
+	 * Gets the time the table was read.
+	 * @return Time in milliseconds since the epoch.
+	 */
+	public long getScrapedAt() {
+		return _scrapedAt;
+	}
+
+	/**
+	 * Gets the number of visits that were read.
+	 * @return Number of visits.
+	 */
+	public int getVisitCount() {
+		return _participants.size();
+	}
+
 	/**
 	 * Creates a string representation of the object.
 	 */
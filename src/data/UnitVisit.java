@@ -1,18 +1,34 @@
 package data;
 
+import java.util.Locale;
+import java.util.Objects;
+
 /**
- * Stores the last time student visited some unit.
+ * Stores the last time student visited some unit. Module, town and country names repeat for many students and scrapes, so
+ * they are shared through a dictionary instead of being stored once per visit.
  * @author Dovydas Rupsys, Nashwan Nouri
  */
 public class UnitVisit {
+	public static final long NEVER = Long.MIN_VALUE;				//Last access of a student that never visited the unit
+	public static final long UNKNOWN = Long.MAX_VALUE;				//Last access of a visit whose time could not be read
+
+	private static final StringDictionary NAMES = new StringDictionary();	//Shared module, town and country names
+	private static final long SECOND = 1000L;
+	private static final long MINUTE = 60 * SECOND;
+	private static final long HOUR = 60 * MINUTE;
+	public static final long DAY = 24 * HOUR;							//Length of a day in milliseconds
+	private static final long WEEK = 7 * DAY;
+	private static final long YEAR = 365 * DAY;
+
 	private String _module;									//the name of module this data is for
 	private String _email;									//the email of the student
 	private String _time;									//the time since last visit
 	private String _town;									//the town of the student during the last visit
 	private String _country;								//the country of the student during the last visit
+	private long _lastAccess;								//the time of the last visit in milliseconds since the epoch
 	
 	/**
-	 * Constructs the object.
+	 * Constructs the object for a visit that was scraped just now.
 	 * @param module The name of module visited.
 	 * @param name The name of student.
 	 * @param time The time since last visit.
@@ -20,13 +36,108 @@ public class UnitVisit {
 	 * @param town  The town of the last visit
 	 */
 	public UnitVisit(String module, String name, String time, String town, String country) {
-		_module = module;
+		this(module, name, time, town, country, parseLastAccess(time, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Constructs the object.
+	 * @param module The name of module visited.
+	 * @param name The name of student.
+	 * @param time The time since last visit.
+	 * @param country The country of the last visit
+	 * @param town  The town of the last visit
+	 * @param lastAccess The time of the last visit in milliseconds since the epoch, NEVER or UNKNOWN.
+	 */
+	public UnitVisit(String module, String name, String time, String town, String country, long lastAccess) {
+		_module = intern(module);
 		_email = name;
 		_time = time;
-		_town =town;
-		_country = country;
+		_town = intern(town);
+		_country = intern(country);
+		_lastAccess = lastAccess;
 	}
 	
+	/**
+	 * Turns the time since the last visit shown by Moodle, like "now", "3 days 4 hours" or "Never", into the time of the visit.
+	 * @param time The time since last visit.
+	 * @param scrapedAt The time the page was read in milliseconds since the epoch.
+	 * @return The time of the last visit in milliseconds since the epoch, NEVER or UNKNOWN.
+	 */
+	public static long parseLastAccess(String time, long scrapedAt) {
+		String text = time.trim().toLowerCase(Locale.ROOT);
+		if (text.equals("now"))
+			return scrapedAt;
+		if (text.equals("never"))
+			return NEVER;
+		
+		long elapsed = 0;
+		boolean found = false;
+		int i = 0;
+		
+		//reads pairs of a number and a unit, like "3 days"
+		while (i < text.length()) {
+			if (!Character.isDigit(text.charAt(i))) {
+				++i;
+				continue;
+			}
+			
+			long amount = 0;
+			while (i < text.length() && Character.isDigit(text.charAt(i))) {
+				amount = amount * 10 + (text.charAt(i++) - '0');
+			}
+			
+			while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+				++i;
+			}
+			
+			int unitStart = i;
+			while (i < text.length() && Character.isLetter(text.charAt(i))) {
+				++i;
+			}
+			
+			long unit = unitLength(text.substring(unitStart, i));
+			if (unit > 0) {
+				elapsed += amount * unit;
+				found = true;
+			}
+		}
+		
+		return found ? scrapedAt - elapsed : UNKNOWN;
+	}
+	
+	/**
+	 * Gets the length of a time unit.
+	 * @param unit Lower case unit, singular, plural or shortened.
+	 * @return Length in milliseconds or 0 if the unit is not known.
+	 */
+	private static long unitLength(String unit) {
+		if (unit.startsWith("y"))
+			return YEAR;
+		if (unit.startsWith("w"))
+			return WEEK;
+		if (unit.startsWith("mo"))
+			return 30 * DAY;
+		if (unit.startsWith("d"))
+			return DAY;
+		if (unit.startsWith("h"))
+			return HOUR;
+		if (unit.startsWith("m"))
+			return MINUTE;
+		if (unit.startsWith("s"))
+			return SECOND;
+		
+		return 0;
+	}
+	
+	/**
+	 * Gets the shared copy of a name.
+	 * @param name Name to be shared, can be null.
+	 * @return Shared copy of the name.
+	 */
+	private static String intern(String name) {
+		return name != null ? NAMES.intern(name) : null;
+	}
+
 	/**
 	 * Gets module name.
 	 * @return Module name.
@@ -51,6 +162,14 @@ public class UnitVisit {
 		return _time;
 	}
 	
+	/**
+	 * Gets the time of the last visit.
+	 * @return Milliseconds since the epoch, NEVER if the student never visited the unit or UNKNOWN if the time was not read.
+	 */
+	public long getLastAccess(){
+		return _lastAccess;
+	}
+	
 	/**
 	 * get students town at the last visit
 	 * @return students town at the last visit
@@ -74,12 +193,20 @@ public class UnitVisit {
 	public boolean equals(Object obj) {
 		if (obj instanceof UnitVisit){
 			UnitVisit v = (UnitVisit)obj;
-			return _module == v.getModule() && _email == v.getEmail() && _time == v.getTime();
+			return Objects.equals(_module, v.getModule()) && Objects.equals(_email, v.getEmail()) && Objects.equals(_time, v.getTime());
 		}
 		
 		return false;
 	}
 	
+	/**
+	 * Creates a hash code from the same fields that equals compares.
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(_module, _email, _time);
+	}
+	
 	/**
 	 * Converts this object to a string representation.
 	 */
@@ -87,7 +214,7 @@ public class UnitVisit {
 	public String toString() {
 		String result = "";
 		
-		if (_time.equals("now"))
+		if (_time.equals("now") || _lastAccess == NEVER)
 			result = _module + " last visited: " + _time;
 		else
 			result = _module + " last visited: " + _time + " ago";
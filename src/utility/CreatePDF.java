@@ -1,250 +1,436 @@
 package utility;
 
 import java.awt.FileDialog;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JDialog;
 
-import windows.MainWindow;
-
-import com.itextpdf.text.Chapter;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.Element;
 import com.itextpdf.text.Font;
+import com.itextpdf.text.Image;
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.Phrase;
-import com.itextpdf.text.Section;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfCopy;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfTemplate;
 import com.itextpdf.text.pdf.PdfWriter;
 
-import data.Student;
+import data.LoadProgress;
+import data.StudentSnapshot;
+import data.UnitVisit;
 
 /**
- * Generates a pdf that is located in the project Folder containing all the
- * students and there info
- * 
+ * Generates a pdf containing the students and their info, a page for every student. The content of a student is added to
+ * the document straight away and written out when its page is finished, so only the page being built is held in memory. The
+ * pdf is written to a temporary file that only replaces the chosen file once every page was written. Large pdfs can be
+ * rendered in parallel, in shards of students that are merged page by page in the order of the students. The headings that
+ * are the same on every page are drawn once per document into templates and the header cells of the tables are shared, so
+ * every page only holds the cells of its student. The pdf is rendered from snapshots of the students, so students that change
+ * while it is written do not change its pages.
+ *
  * @author Nashwan Nouri, Darren Middleton
  *
  */
 public class CreatePDF {
+	public static final int SHARD_SIZE = 250;										// students rendered together by a worker thread
+
+	static final Font HEADER_FONT = new Font(Font.FontFamily.COURIER, 14, Font.UNDERLINE); // font for headers
+	private static final float TEXT_LEADING = 16f;									// leading of a paragraph in the default font
+	private static final float HEADER_LEADING = 21f;								// leading of a paragraph in the header font
+	// header cells of the tables, copied into every table by addCell
+	private static final PdfPCell[] RESULT_HEADERS = createHeaderCells("Assessment Name ", "Assessment Mark ", "Assessment Grade ");
+	private static final PdfPCell[] VISIT_HEADERS = createHeaderCells("Module ", "Town ", "Country ", "Time");
 
 	private Document _document; 													// the pdf file
-	private ArrayList<Student> _studentArray; 										// students the pdf will contain
-	private Font headerFont = new Font(Font.FontFamily.COURIER, 14,Font.UNDERLINE); // font for headers
-	private String _pdfSaveFile; 													// the position and name of the pdf file
-	private Student _student; 														// student being referenced
+	private ArrayList<StudentSnapshot> _studentArray; 								// students the pdf will contain
+	private File _pdfSaveFile; 														// the position and name of the pdf file
+	private StudentSnapshot _student; 												// student being referenced
+	private Image _informationTitle; 												// title of the student information
+	private Image _resultTitle; 													// title of the results table
+	private Image _visitTitle; 														// title of the units visited table
 
 	/**
-	 * Generates a pdf file containing student information
-	 * @param window  A reference to the main program window.
+	 * Prepares a pdf file containing information of some students. The file is written when write is called.
+	 * @param students Snapshots of the students the pdf will contain, see StudentSnapshot.copy.
+	 * @param file The file the pdf is saved to.
 	 */
-	public CreatePDF(MainWindow window) {
-		// get all the students the pdf document will contain
-		_studentArray = window.getStudents();
+	public CreatePDF(ArrayList<StudentSnapshot> students, File file) {
+		_studentArray = students;
+		_pdfSaveFile = file;
+	}
 
-		// opens a save file box where pdf will be saved
-		 saveFileDialog();
+	/**
+	 * Writes the pdf, a page for every student.
+	 * @param progress Progress counted in students, checked between students to find out if the user cancelled.
+	 * @return true if the pdf was written, false if it was cancelled and no file was written.
+	 * @throws IOException If the file could not be written.
+	 * @throws DocumentException If the content of a student could not be added to the pdf.
+	 */
+	public boolean write(LoadProgress progress) throws IOException, DocumentException {
+		return write(progress, 1);
+	}
 
-		// the document is being updated for every student
+	/**
+	 * Writes the pdf, a page for every student, rendering shards of students on several threads when there are enough
+	 * students. The pages are in the same order with the same content as when the pdf is rendered on one thread.
+	 * @param progress Progress counted in students, checked between students to find out if the user cancelled.
+	 * @param threads Number of threads that render shards at the same time.
+	 * @return true if the pdf was written, false if it was cancelled and no file was written.
+	 * @throws IOException If the file could not be written.
+	 * @throws DocumentException If the content of a student could not be added to the pdf.
+	 */
+	public boolean write(LoadProgress progress, int threads) throws IOException, DocumentException {
+		File temp = new File(_pdfSaveFile.getPath() + ".part");
+		boolean written = false;
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+			if (threads > 1 && _studentArray.size() > SHARD_SIZE)
+				written = renderShards(out, progress, threads);
+			else
+				written = render(out, progress);
+
+			if (!written)
+				return false;
+		} finally {
+			// a cancelled or failed pdf is not left behind
+			if (!written)
+				temp.delete();
+		}
+
+		if (_pdfSaveFile.exists() && !_pdfSaveFile.delete()) {
+			temp.delete();
+			throw new IOException("Could not replace " + _pdfSaveFile.getPath());
+		}
+		if (!temp.renameTo(_pdfSaveFile))
+			throw new IOException("Could not create " + _pdfSaveFile.getPath());
+
+		return true;
+	}
+
+	/**
+	 * Renders the pdf of every student on the current thread.
+	 * @param out Stream the pdf is written to.
+	 * @param progress Progress counted in students.
+	 * @return true if the pdf was written, false if it was cancelled.
+	 * @throws DocumentException If the content of a student could not be added to the pdf.
+	 */
+	private boolean render(OutputStream out, LoadProgress progress) throws DocumentException {
 		try {
 			// creates a pdf document
 			_document = new Document();
-			PdfWriter
-					.getInstance(_document, new FileOutputStream(_pdfSaveFile));
+			PdfWriter writer = PdfWriter.getInstance(_document, out);
 			_document.open();
+
+			// the titles are the same on every page, so they are drawn once
+			_informationTitle = createTitle(writer, "student information");
+			_resultTitle = createTitle(writer, "Student Assessment Results");
+			_visitTitle = createTitle(writer, "Units visited");
+
 			// information on each student is added to the document
 			for (int i = 0; i < _studentArray.size(); ++i) {
+				if (progress.isCancelled())
+					return false;
+
 				_student = _studentArray.get(i);
 				addContent();
 
-				// starts a new page
+				// starts a new page, which writes out the page of the student
 				_document.newPage();
-
+				progress.addProcessed(1, 1);
 			}
 
 			// document is finished
 			_document.close();
-		} 
-		catch (Exception e) {}
+			return true;
+		} finally {
+			_student = null;
+		}
+	}
+
+	/**
+	 * Renders shards of students into pdfs in memory on a pool of threads and copies their pages to the output in the order
+	 * of the shards. Only a few shards are rendered ahead of the one being copied, so the memory used does not grow with the
+	 * number of students.
+	 * @param out Stream the merged pdf is written to.
+	 * @param progress Progress counted in students.
+	 * @param threads Number of threads that render shards.
+	 * @return true if the pdf was written, false if it was cancelled.
+	 * @throws IOException If a shard could not be read back.
+	 * @throws DocumentException If a shard could not be rendered or copied.
+	 */
+	private boolean renderShards(OutputStream out, LoadProgress progress, int threads) throws IOException, DocumentException {
+		int shardCount = (_studentArray.size() + SHARD_SIZE - 1) / SHARD_SIZE;
+		int next = 0;
+		ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+			while (next < shardCount && pending.size() < threads * 2)
+				pending.add(pool.submit(createShard(next++, progress)));
+
+			Document document = new Document();
+			PdfCopy copy = new PdfCopy(document, out);
+			document.open();
+
+			while (!pending.isEmpty()) {
+				byte[] shard = getShard(pending.poll());
+				if (shard == null)
+					return false;
+
+				// the next shard is rendered while this one is copied
+				if (next < shardCount)
+					pending.add(pool.submit(createShard(next++, progress)));
+
+				PdfReader reader = new PdfReader(shard);
+				for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+					copy.addPage(copy.getImportedPage(reader, page));
+				}
+				copy.freeReader(reader);
+				reader.close();
+			}
+
+			document.close();
+			return true;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates the task that renders a shard of students into a pdf in memory.
+	 * @param shard Index of the shard.
+	 * @param progress Progress counted in students.
+	 * @return Task returning the pdf or null if it was cancelled.
+	 */
+	private Callable<byte[]> createShard(int shard, final LoadProgress progress) {
+		int from = shard * SHARD_SIZE;
+		final ArrayList<StudentSnapshot> students = new ArrayList<StudentSnapshot>(_studentArray.subList(from, Math.min(from + SHARD_SIZE, _studentArray.size())));
+
+		return new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws DocumentException {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				if (!new CreatePDF(students, null).render(bytes, progress))
+					return null;
+
+				return bytes.toByteArray();
+			}
+		};
+	}
+
+	/**
+	 * Waits for a shard to be rendered.
+	 * @param shard Task rendering the shard.
+	 * @return The pdf of the shard or null if it was cancelled.
+	 * @throws IOException If the thread was interrupted while waiting.
+	 * @throws DocumentException If the shard could not be rendered.
+	 */
+	private static byte[] getShard(Future<byte[]> shard) throws IOException, DocumentException {
+		try {
+			return shard.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Writing the pdf was interrupted.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof DocumentException)
+				throw (DocumentException)e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+
+			throw new IOException(e.getCause());
+		}
 	}
 
 	/**
 	 * adds all the student information to the document
-	 * 
+	 *
 	 * @throws DocumentException
 	 */
 	private void addContent() throws DocumentException {
 
-		// chapter for the individual page
-		Chapter studentsFullObject = new Chapter("Student Page", 0);
-		studentsFullObject.setNumberDepth(0);
-
-		// Paragraph to which the sections will be added to
-		Paragraph baseSubParagraph = new Paragraph(" ");
-
 		// adds the students basic information to the document
-		Section subSectionBasicInfo = studentsFullObject.addSection(baseSubParagraph);
-		subSectionBasicInfo.setNumberDepth(0);
-		getStudentInformation(subSectionBasicInfo);
+		getStudentInformation();
 
 		// adds the students assessment results to the document
-		Section subSectionResultTable = studentsFullObject.addSection(baseSubParagraph);
-		subSectionResultTable.setNumberDepth(0);
-		getResultTable(subSectionResultTable);
+		getResultTable();
 
 		// adds the units visited to the document
-		Section subSectionUnitVisited = studentsFullObject.addSection(baseSubParagraph);
-		subSectionUnitVisited.setNumberDepth(0);
-		getUnitsVisited(subSectionUnitVisited);
+		getUnitsVisited();
 
 	}
 
+	/**
+	 * Draws a title into a template that every page refers to, with the same space around it as an empty line before and
+	 * after the title.
+	 *
+	 * @param writer
+	 *            writer of the document
+	 * @param title
+	 *            text of the title
+	 * @return the title that can be added to the document
+	 * @throws DocumentException
+	 *             if the title could not be drawn
+	 */
+	private Image createTitle(PdfWriter writer, String title) throws DocumentException {
+		PdfTemplate template = writer.getDirectContent().createTemplate(
+				_document.right() - _document.left(), TEXT_LEADING + HEADER_LEADING + TEXT_LEADING);
+
+		// the baseline is as far above the empty line below as it would be in a paragraph
+		ColumnText.showTextAligned(template, Element.ALIGN_LEFT, new Phrase(title, HEADER_FONT), 0,
+				TEXT_LEADING + HEADER_LEADING - HEADER_FONT.getSize(), 0);
+
+		return Image.getInstance(template);
+	}
+
+	/**
+	 * Creates header cells that are shared by the tables of every student.
+	 *
+	 * @param headers
+	 *            text of the headers
+	 * @return the header cells
+	 */
+	static PdfPCell[] createHeaderCells(String... headers) {
+		PdfPCell[] cells = new PdfPCell[headers.length];
+		for (int i = 0; i < headers.length; i++) {
+			cells[i] = new PdfPCell(new Phrase(headers[i]));
+		}
+
+		return cells;
+	}
+
+	/**
+	 * Creates a table that starts with a header row.
+	 *
+	 * @param headers
+	 *            header cells of the table
+	 * @return the table
+	 */
+	static PdfPTable createTable(PdfPCell[] headers) {
+		PdfPTable table = new PdfPTable(headers.length);
+		for (int i = 0; i < headers.length; i++) {
+			table.addCell(headers[i]);
+		}
+		table.setHorizontalAlignment(Element.ALIGN_CENTER);
+		table.setHeaderRows(1);
+
+		return table;
+	}
+
 	/**
 	 * Creates a table with the students results
-	 * 
-	 * @param section
-	 *            section where the table is added
+	 *
 	 * @throws DocumentException
-	 *             if section could not be added to the document
+	 *             if the table could not be added to the document
 	 */
-	private void getResultTable(Section section) throws DocumentException {
-
-		// Adds the title to a section.
-		section.add(new Paragraph(" "));
-		section.add(new Paragraph("Student Assessment Results", headerFont));
-		section.add(new Paragraph(" "));
-
-		// Creates the table with 3 rows.
-		PdfPTable assessmentTable = new PdfPTable(3);
-		PdfPCell firstHeader = new PdfPCell(new Phrase("Assessment Name "));
-		PdfPCell secondHeader = new PdfPCell(new Phrase("Assessment Mark "));
-		PdfPCell thirdHeader = new PdfPCell(new Phrase("Assessment Grade "));
-		assessmentTable.addCell(firstHeader);
-		assessmentTable.addCell(secondHeader);
-		assessmentTable.addCell(thirdHeader);
-		assessmentTable.setHorizontalAlignment(Element.ALIGN_CENTER);
-		assessmentTable.setHeaderRows(1);
+	private void getResultTable() throws DocumentException {
+
+		// Adds the title to the document.
+		_document.add(_resultTitle);
+
+		// Creates the table with 3 columns.
+		PdfPTable assessmentTable = createTable(RESULT_HEADERS);
 
 		// Adds the students result to the table for each assessment.
-		for (int i = 0; i < _student.getStudentResultsSize(); i++) {
-			assessmentTable.addCell(_student.getStudentResult(i).getAssessmentName());
-			assessmentTable.addCell("" + _student.getStudentResult(i).getMark());
-			assessmentTable.addCell(_student.getStudentResult(i).getGrade());
+		for (int i = 0; i < _student.getResultCount(); i++) {
+			assessmentTable.addCell(_student.getResultName(i));
+			assessmentTable.addCell(_student.getMarkText(i));
+			assessmentTable.addCell(_student.getGrade(i));
 		}
 
-		// Adds the assessment table to a section.
-		section.add(assessmentTable);
-
-		// Adds the section to the document
-		section.setComplete(true);
-		_document.add(section);
+		// Adds the assessment table to the document
+		_document.add(assessmentTable);
 
 	}
 
 	/**
-	 * Creates a table and adds it to the section
-	 * 
-	 * @param section
-	 *            where the table will be added
+	 * Creates a table with the units the student visited
+	 *
 	 * @throws DocumentException
-	 *             if the section could not be added to the document
+	 *             if the table could not be added to the document
 	 */
-	public void getUnitsVisited(Section section) throws DocumentException {
-
-		// Adds the title to the section
-		section.add(new Paragraph(" "));
-		section.add(new Paragraph("Units visited", headerFont));
-		section.add(new Paragraph(" "));
-
-		// create a table with 3 headers
-		PdfPTable unitsVisted = new PdfPTable(4);
-		PdfPCell firstHeader = new PdfPCell(new Phrase("Module "));
-		PdfPCell secondHeader = new PdfPCell(new Phrase("Town "));
-		PdfPCell thirdHeader = new PdfPCell(new Phrase("Country "));
-		PdfPCell forthHeader = new PdfPCell(new Phrase("Time"));
-		unitsVisted.addCell(firstHeader);
-		unitsVisted.addCell(secondHeader);
-		unitsVisted.addCell(thirdHeader);
-		unitsVisted.addCell(forthHeader);
-		unitsVisted.setHorizontalAlignment(Element.ALIGN_CENTER);
-		unitsVisted.setHeaderRows(1);
+	public void getUnitsVisited() throws DocumentException {
+
+		// Adds the title to the document
+		_document.add(_visitTitle);
+
+		// create a table with 4 headers
+		PdfPTable unitsVisted = createTable(VISIT_HEADERS);
 
 		// creates a table using students participation data
-		for (int i = 0; i < _student.getUnitVisitedCount(); i++) {
-			unitsVisted.addCell(_student.getUnitVisited(i).getModule());
-			unitsVisted.addCell(_student.getUnitVisited(i).getTown());
-			unitsVisted.addCell(_student.getUnitVisited(i).getCountry());
-			unitsVisted.addCell(_student.getUnitVisited(i).getTime());
+		for (UnitVisit visit : _student.getUnitVisits()) {
+			unitsVisted.addCell(visit.getModule());
+			unitsVisted.addCell(visit.getTown());
+			unitsVisted.addCell(visit.getCountry());
+			unitsVisted.addCell(visit.getTime());
 		}
 
-		// Adds the table to the section
-		section.add(unitsVisted);
-
-		// add the section to the document
-		section.setComplete(true);
-		_document.add(section);
+		// Adds the table to the document
+		_document.add(unitsVisted);
 
 	}
 
 	/**
 	 * Get the students basic information
-	 * 
-	 * @param section
-	 *            where the information will be stored
+	 *
 	 * @throws DocumentException
-	 *             if section could not be added to the document
+	 *             if the information could not be added to the document
 	 */
-	private void getStudentInformation(Section section)
-			throws DocumentException {
-
-		// add the title to the Section
-		section.add(new Paragraph(" "));
-		section.add(new Paragraph("student information", headerFont));
-		section.add(new Paragraph(" "));
-
-		// add student basic information to section
-		section.add(new Paragraph("Student Name: " + _student.getName()));
-		section.add(new Paragraph("Student Number: " + _student.getNumber()));
-		section.add(new Paragraph("Students Email: " + _student.getEmail()));
-		section.add(new Paragraph("Tutors email: " + _student.getTutor()));
-
-		// add the section to the document
-		section.setComplete(true);
-		_document.add(section);
+	private void getStudentInformation() throws DocumentException {
+
+		// add the title to the document
+		_document.add(_informationTitle);
+
+		// add student basic information to the document
+		_document.add(new Paragraph("Student Name: " + _student.getName()));
+		_document.add(new Paragraph("Student Number: " + _student.getNumber()));
+		_document.add(new Paragraph("Students Email: " + _student.getEmail()));
+		_document.add(new Paragraph("Tutors email: " + _student.getTutor()));
 	}
 
 	/**
-	 * Get the path of where the user wants to save the file
-	 * 
-	 * @return path of the saved file
+	 * Asks the user where the pdf should be saved
+	 *
+	 * @return the chosen file or null if no file was chosen
 	 */
-	private String saveFileDialog() {
-		
+	public static File saveFileDialog() {
+
 		// save dialog box is created
 		FileDialog fileDialog = new FileDialog(new JDialog(), "Save the pdf file", FileDialog.SAVE);
 		fileDialog.setDirectory("C:");
 		fileDialog.setVisible(true);
-		
+
 		// Gets the file name and the path to the file
 		String dir = fileDialog.getDirectory();
 		String fileS = fileDialog.getFile();
 
-		// If no file was selected return false
+		// If no file was selected return null
 		if (dir == null || fileS == null)
-			return _pdfSaveFile =null;
+			return null;
 
 		// checks for overlap of file names
 		File file = new File(dir + fileS);
 		if (file.exists())
-			_pdfSaveFile = dir + fileS;
+			return file;
 		else
-			_pdfSaveFile = dir + fileS + ".pdf";
-
-		return _pdfSaveFile;
+			return new File(dir + fileS + ".pdf");
 	}
 
-}
\ No newline at end of file
+}
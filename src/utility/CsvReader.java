@@ -0,0 +1,172 @@
+package utility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+
+/**
+ * Streaming CSV reader that returns one row at a time. Supports quoted fields with commas, escaped quotes ("") and line breaks.
+ * The character buffer and field builder are reused between rows, so memory use does not depend on the size of the file.
+ * @author Dovydas Rupsys
+ */
+public class CsvReader implements Closeable {
+	private static final int BUFFER_SIZE = 64 * 1024;			//Number of characters read from the source at a time
+
+	private Reader _reader;										//Source of the csv data
+	private char[] _buffer;										//Reused buffer of characters read from the source
+	private int _position;										//Position of the next unread character in the buffer
+	private int _limit;											//Number of valid characters in the buffer
+	private StringBuilder _field;								//Reused builder for the field being read
+	private ArrayList<String> _row;								//Reused list of fields of the row being read
+	private long _rowCount;										//Number of rows returned so far
+	private long _charsRead;									//Number of characters read from the source so far
+
+	/**
+	 * Constructs a csv reader over the provided character stream.
+	 * @param reader Source of the csv data.
+	 */
+	public CsvReader(Reader reader) {
+		_reader = reader;
+		_buffer = new char[BUFFER_SIZE];
+		_position = 0;
+		_limit = 0;
+		_field = new StringBuilder(64);
+		_row = new ArrayList<String>();
+		_rowCount = 0;
+		_charsRead = 0;
+	}
+
+	/**
+	 * Constructs a csv reader over the specified file.
+	 * @param file File to be read.
+	 * @throws IOException If the file could not be opened.
+	 */
+	public CsvReader(File file) throws IOException {
+		this(new FileReader(file));
+	}
+
+	/**
+	 * Gets the next character from the source.
+	 * @return Next character or -1 if the end of the source was reached.
+	 * @throws IOException
+	 */
+	private int nextChar() throws IOException {
+		if (_position == _limit) {
+			_limit = _reader.read(_buffer, 0, _buffer.length);
+			_position = 0;
+
+			if (_limit <= 0) {
+				_limit = 0;
+				return -1;
+			}
+
+			_charsRead += _limit;
+		}
+
+		return _buffer[_position++];
+	}
+
+	/**
+	 * Looks at the next character without consuming it.
+	 * @return Next character or -1 if the end of the source was reached.
+	 * @throws IOException
+	 */
+	private int peekChar() throws IOException {
+		int c = nextChar();
+
+		if (c != -1)
+			--_position;
+
+		return c;
+	}
+
+	/**
+	 * Reads the next row of the file. Empty lines are skipped.
+	 * @return Array of fields of the row or null if there are no more rows.
+	 * @throws IOException If the source could not be read.
+	 */
+	public String[] readRow() throws IOException {
+		_row.clear();
+		_field.setLength(0);
+
+		boolean quoted = false;			//true while inside of a quoted field
+		boolean fieldStarted = false;	//true once any character of the current row was read
+		int c;
+
+		while ((c = nextChar()) != -1) {
+			if (quoted) {
+				if (c == '"') {
+					//two quotes in a row stand for a single quote character
+					if (peekChar() == '"') {
+						nextChar();
+						_field.append('"');
+					}
+					else
+						quoted = false;
+				}
+				else
+					_field.append((char)c);
+			}
+			else if (c == '"' && _field.length() == 0) {
+				quoted = true;
+				fieldStarted = true;
+			}
+			else if (c == ',') {
+				_row.add(_field.toString());
+				_field.setLength(0);
+				fieldStarted = true;
+			}
+			else if (c == '\n' || c == '\r') {
+				//treats \r\n as a single line break
+				if (c == '\r' && peekChar() == '\n')
+					nextChar();
+
+				//skips empty lines
+				if (!fieldStarted && _field.length() == 0)
+					continue;
+
+				break;
+			}
+			else {
+				_field.append((char)c);
+				fieldStarted = true;
+			}
+		}
+
+		//if nothing was read then the end of the file was reached
+		if (c == -1 && !fieldStarted && _field.length() == 0)
+			return null;
+
+		_row.add(_field.toString());
+		++_rowCount;
+
+		return _row.toArray(new String[_row.size()]);
+	}
+
+	/**
+	 * Gets the number of rows read so far.
+	 * @return Number of rows.
+	 */
+	public long getRowCount() {
+		return _rowCount;
+	}
+
+	/**
+	 * Gets the number of characters read from the source so far. Can be used to estimate how much of the file was processed.
+	 * @return Number of characters.
+	 */
+	public long getCharactersRead() {
+		return _charsRead;
+	}
+
+	/**
+	 * Releases the source of the csv data.
+	 */
+	@Override
+	public void close() throws IOException {
+		_reader.close();
+	}
+}
@@ -0,0 +1,303 @@
+package utility;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.itextpdf.text.DocumentException;
+
+import data.LoadProgress;
+import data.StudentSnapshot;
+
+/**
+ * Exports a pdf for every student into a directory together with an index of the files. The index keeps a hash of the
+ * content of every student (see Student.getContentHash), so a later export into the same directory only renders the students
+ * whose results, visits or details changed and removes the files of students that are no longer exported. The students are
+ * exported from snapshots that hold the hash of what they contain, so the hash in the index always matches the file.
+ * @author Dovydas Rupsys
+ */
+public class IncrementalPdfExport {
+	public static final String INDEX_FILE = "index.csv";			//Index of the exported files in the directory
+	public static final String LAYOUT = "1";						//Layout of the pages, changing it renders every student again
+
+	private static final String[] INDEX_HEADER = { "number", "name", "email", "file", "hash", "layout" };
+	private static final int NUMBER_COLUMN = 0;						//Column of the index with the student number
+	private static final int FILE_COLUMN = 3;						//Column of the index with the file of the student
+	private static final int HASH_COLUMN = 4;						//Column of the index with the content hash
+	private static final int LAYOUT_COLUMN = 5;						//Column of the index with the page layout
+
+	private File _directory;										//Directory the files are written to
+	private ArrayList<StudentSnapshot> _students;					//Snapshots of the students that are exported
+	private int _rendered;											//Number of students whose file was written
+	private int _unchanged;											//Number of students whose file was kept
+	private int _removed;											//Number of files of students no longer exported
+
+	/**
+	 * Prepares an export of students into a directory. The files are written when write is called.
+	 * @param students Snapshots of the students that are exported, see StudentSnapshot.copy.
+	 * @param directory Directory of the files, it may hold an earlier export.
+	 */
+	public IncrementalPdfExport(ArrayList<StudentSnapshot> students, File directory) {
+		_students = students;
+		_directory = directory;
+	}
+
+	/**
+	 * Writes the file of every student that changed since the last export and the index. When the export is cancelled the
+	 * index is still written, the students that were not rendered keep their old hash and are rendered by the next export.
+	 * @param progress Progress counted in students, unchanged students count as soon as they are compared.
+	 * @param threads Number of students rendered at the same time.
+	 * @return true if every student was exported, false if it was cancelled.
+	 * @throws IOException If a file or the index could not be written, or there are no students to export.
+	 * @throws DocumentException If the content of a student could not be added to a pdf.
+	 */
+	public boolean write(final LoadProgress progress, int threads) throws IOException, DocumentException {
+		// an empty export would remove every file of an earlier export
+		if (_students.isEmpty())
+			throw new IOException("There are no students to export.");
+
+		if (!_directory.exists() && !_directory.mkdirs())
+			throw new IOException("Could not create " + _directory.getPath());
+
+		HashMap<String, String[]> previous = readIndex();
+		final ArrayList<String[]> index = new ArrayList<String[]>(_students.size());
+		ArrayList<Integer> changed = new ArrayList<Integer>();
+		String[] names = new String[_students.size()];
+		HashSet<String> files = new HashSet<String>();
+		HashSet<String> used = new HashSet<String>();
+
+		// only students whose hash differs from the last export are rendered
+		for (int i = 0; i < _students.size(); i++) {
+			StudentSnapshot student = _students.get(i);
+			String file = getFileName(student, used);
+			String hash = Long.toHexString(student.getContentHash());
+			String[] entry = previous.get(file);
+			files.add(file);
+
+			if (entry != null && entry[NUMBER_COLUMN].equals(student.getNumber()) && entry[HASH_COLUMN].equals(hash)
+					&& entry[LAYOUT_COLUMN].equals(LAYOUT) && new File(_directory, file).exists()) {
+				index.add(createEntry(student, file, hash));
+				progress.addProcessed(1, 1);
+				++_unchanged;
+			}
+			else {
+				// until the student is rendered the index keeps the old hash, so an unfinished export renders it again
+				index.add(entry != null ? entry : createEntry(student, file, ""));
+				names[i] = file;
+				changed.add(i);
+			}
+		}
+
+		boolean finished = false;
+		try {
+			finished = render(changed, names, index, progress, threads);
+		} finally {
+			writeIndex(index);
+		}
+
+		// files of students that were not exported this time are removed
+		for (String file : previous.keySet()) {
+			if (!files.contains(file) && new File(_directory, file).delete())
+				++_removed;
+		}
+
+		return finished;
+	}
+
+	/**
+	 * Renders the changed students on a pool of threads, a file for every student.
+	 * @param changed Positions of the changed students.
+	 * @param names File names of the students by position.
+	 * @param index Entries of the index, the entry of a student is replaced once its file was written.
+	 * @param progress Progress counted in students.
+	 * @param threads Number of students rendered at the same time.
+	 * @return true if every student was rendered, false if it was cancelled.
+	 * @throws IOException If a file could not be written.
+	 * @throws DocumentException If the content of a student could not be added to a pdf.
+	 */
+	private boolean render(List<Integer> changed, String[] names, final ArrayList<String[]> index, final LoadProgress progress, int threads)
+			throws IOException, DocumentException {
+		if (changed.isEmpty())
+			return true;
+
+		ArrayList<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(changed.size());
+		for (int i = 0; i < changed.size(); i++) {
+			final int position = changed.get(i);
+			final StudentSnapshot student = _students.get(position);
+			final String file = names[position];
+
+			tasks.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException, DocumentException {
+					ArrayList<StudentSnapshot> page = new ArrayList<StudentSnapshot>(1);
+					page.add(student);
+
+					if (!new CreatePDF(page, new File(_directory, file)).write(progress))
+						return false;
+
+					synchronized (index) {
+						index.set(position, createEntry(student, file, Long.toHexString(student.getContentHash())));
+					}
+					return true;
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			List<Future<Boolean>> results = pool.invokeAll(tasks);
+			boolean finished = true;
+
+			for (int i = 0; i < results.size(); i++) {
+				if (results.get(i).get())
+					++_rendered;
+				else
+					finished = false;
+			}
+
+			return finished;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			if (e.getCause() instanceof DocumentException)
+				throw (DocumentException)e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Gets the name of the file of a student, characters that cannot be part of a file name are replaced. When another
+	 * student of the export already has the name, ignoring case, a number is added to it, so no two students share a file.
+	 * @param student Student being exported.
+	 * @param used Names given to the students before it in lower case, the name of this student is added.
+	 * @return Name of the file in the directory.
+	 */
+	private static String getFileName(StudentSnapshot student, HashSet<String> used) {
+		String name = student.getNumber().replaceAll("[^A-Za-z0-9_-]", "_");
+		String file = name + ".pdf";
+
+		for (int i = 2; !used.add(file.toLowerCase()); i++) {
+			file = name + "_" + i + ".pdf";
+		}
+
+		return file;
+	}
+
+	/**
+	 * Creates the index entry of a student.
+	 */
+	private static String[] createEntry(StudentSnapshot student, String file, String hash) {
+		return new String[] { student.getNumber(), student.getName(), String.valueOf(student.getEmail()), file, hash, LAYOUT };
+	}
+
+	/**
+	 * Reads the index of the last export into the directory.
+	 * @return Entries of the index by file name, empty if there was no export before.
+	 * @throws IOException If the index could not be read.
+	 */
+	private HashMap<String, String[]> readIndex() throws IOException {
+		HashMap<String, String[]> entries = new HashMap<String, String[]>();
+		File file = new File(_directory, INDEX_FILE);
+		if (!file.exists())
+			return entries;
+
+		try (CsvReader reader = new CsvReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			// the first row holds the column names
+			reader.readRow();
+
+			String[] row;
+			while ((row = reader.readRow()) != null) {
+				if (row.length == INDEX_HEADER.length)
+					entries.put(row[FILE_COLUMN], row);
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Writes the index, replacing the index of the last export only once it was written completely.
+	 * @param index Entries of the index in the order of the students.
+	 * @throws IOException If the index could not be written.
+	 */
+	private void writeIndex(ArrayList<String[]> index) throws IOException {
+		File file = new File(_directory, INDEX_FILE);
+		File temp = new File(_directory, INDEX_FILE + ".tmp");
+
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+			writeRow(out, INDEX_HEADER);
+			synchronized (index) {
+				for (int i = 0; i < index.size(); i++) {
+					writeRow(out, index.get(i));
+				}
+			}
+		}
+
+		if (file.exists() && !file.delete())
+			throw new IOException("Could not replace " + file.getPath());
+		if (!temp.renameTo(file))
+			throw new IOException("Could not create " + file.getPath());
+	}
+
+	/**
+	 * Writes a row of the index, quoting every cell.
+	 */
+	private static void writeRow(Writer out, String[] row) throws IOException {
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0)
+				out.write(',');
+
+			out.write('"');
+			out.write(row[i].replace("\"", "\"\""));
+			out.write('"');
+		}
+		out.write("\r\n");
+	}
+
+	/**
+	 * Gets the number of students whose file was written.
+	 * @return Number of students.
+	 */
+	public int getRenderedCount() {
+		return _rendered;
+	}
+
+	/**
+	 * Gets the number of students whose file was kept because they did not change.
+	 * @return Number of students.
+	 */
+	public int getUnchangedCount() {
+		return _unchanged;
+	}
+
+	/**
+	 * Gets the number of files removed because their students were not exported.
+	 * @return Number of files.
+	 */
+	public int getRemovedCount() {
+		return _removed;
+	}
+}
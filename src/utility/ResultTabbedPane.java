@@ -27,6 +27,8 @@ import data.Student;
 public class ResultTabbedPane extends JTabbedPane {
 	private static final long serialVersionUID = 1L;
 	
+	private static final String ASSESSMENT_PROPERTY = "assessment";				//Client property of a tab panel that holds its assessment
+	
 	MainWindow _wndMain;															//Holds a reference to the main window.
 	
 	// Creates mouse click event for the exam result table
@@ -42,17 +44,20 @@ public class ResultTabbedPane extends JTabbedPane {
 			int row = jtResults.rowAtPoint(e.getPoint());
 			int col = jtResults.columnAtPoint(e.getPoint());
 			
-			jtResults.getTableHeader();
+			//if the name was clicked, finds the student by the number in the same row
+			if (col != 0 || row == -1)
+				return;
+			
 			//if student is found, display info window
-			Student student = _wndMain.findStudent((String)jtResults.getValueAt(row, col));
-			if(col == 0 && student != null){
+			Student student = _wndMain.getDirectory().findByNumber((String)jtResults.getValueAt(row, 1));
+			if(student != null){
 				if (_wndPopUp == null) {
-					_wndPopUp = new StudentInfoWindow(student);
+					_wndPopUp = new StudentInfoWindow(student, _wndMain.getHistory());
 				}
 				else {
 					// if window already exists, destroy and make a new one
 					_wndPopUp.dispose();
-					_wndPopUp = new StudentInfoWindow(student);
+					_wndPopUp = new StudentInfoWindow(student, _wndMain.getHistory());
 				}
 			}
 		}
@@ -63,11 +68,31 @@ public class ResultTabbedPane extends JTabbedPane {
 	 * @return Table Model of a table in a selected tab.
 	 */
 	public TableModel getTableModel(){
-		JPanel panel = (JPanel)getSelectedComponent();
+		return getTable((JPanel)getSelectedComponent()).getModel();
+	}
+
+	/**
+	 * Gets the result table of a tab.
+	 * @param panel Panel of the tab.
+	 * @return Table in the tab.
+	 */
+	private JTable getTable(JPanel panel){
 		JScrollPane scrollPane = (JScrollPane)panel.getComponent(0);
-		JTable table = (JTable)scrollPane.getViewport().getComponent(0);
 		
-		return table.getModel();
+		return (JTable)scrollPane.getViewport().getComponent(0);
+	}
+
+	/**
+	 * Gets the assessment displayed in the currently selected tab.
+	 * @return Selected assessment or null if there are no tabs.
+	 */
+	public Assessment getSelectedAssessment(){
+		JPanel panel = (JPanel)getSelectedComponent();
+		
+		if (panel == null)
+			return null;
+		
+		return (Assessment)panel.getClientProperty(ASSESSMENT_PROPERTY);
 	}
 
 	/**
@@ -80,21 +105,41 @@ public class ResultTabbedPane extends JTabbedPane {
 	}
 	
 	/**
-	 * Creates a new tab on the tabbed pane with assessment table.
-	 * @param assessment Assessment data to be loaded in the table.
+	 * Creates an un-editable table model with the results of an assessment. Does not touch any components, so it can be called
+	 * from a background thread.
+	 * @param assessment Assessment data to be loaded in the model.
+	 * @return Table model with a row for every result.
 	 */
-	public void newResultTab(final Assessment assessment){
-		final JPanel tabPanel = new JPanel(new BorderLayout());
-		
-		//create un-editable table
-		JTable tabTable = new JTable(new DefaultTableModel(assessment.dataArray(), assessment.columnNamesArray()){
+	public static TableModel createTableModel(Assessment assessment){
+		return new DefaultTableModel(assessment.dataArray(), assessment.columnNamesArray()){
 			private static final long serialVersionUID = 1L;
 			
 		    @Override
 		    public boolean isCellEditable(int row, int column) {
 		        return false;
 		    }
-		});
+		};
+	}
+	
+	/**
+	 * Creates a new tab on the tabbed pane with assessment table.
+	 * @param assessment Assessment data to be loaded in the table.
+	 */
+	public void newResultTab(Assessment assessment){
+		newResultTab(assessment, createTableModel(assessment));
+	}
+	
+	/**
+	 * Creates a new tab on the tabbed pane with a table that was already filled with the assessment data.
+	 * @param assessment Assessment displayed in the tab.
+	 * @param model Table model created by createTableModel.
+	 */
+	public void newResultTab(final Assessment assessment, TableModel model){
+		final JPanel tabPanel = new JPanel(new BorderLayout());
+		tabPanel.putClientProperty(ASSESSMENT_PROPERTY, assessment);
+		
+		//create un-editable table
+		JTable tabTable = new JTable(model);
 		
 		//sets default table parameters and assigns event listener
 		tabTable.getTableHeader().setReorderingAllowed(false);
@@ -126,5 +171,21 @@ public class ResultTabbedPane extends JTabbedPane {
 		int index = indexOfComponent(tabPanel);
 		setTabComponentAt(index, titlePanel);
 	}
+	
+	/**
+	 * Refills the table of the tab that displays an assessment, used after the results of the assessment changed.
+	 * @param assessment Assessment whose results changed.
+	 */
+	public void refreshResultTab(Assessment assessment){
+		for (int i = 0; i < getTabCount(); i++) {
+			JPanel panel = (JPanel)getComponentAt(i);
+			
+			if (panel.getClientProperty(ASSESSMENT_PROPERTY) == assessment) {
+				JTable table = getTable(panel);
+				table.setModel(createTableModel(assessment));
+				table.getColumnModel().getColumn(0).setMinWidth(100);
+			}
+		}
+	}
 
 }
@@ -0,0 +1,226 @@
+package utility;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import data.Student;
+import data.StudentSearchIndex;
+
+/**
+ * List model that displays the students matching a filter. The model does not copy students, it holds the indexes of the
+ * matching students in an array. Search keys are lower cased once per student, matching runs in the background a moment
+ * after the user stops typing, and a filter that extends the previous one only searches the previous exact matches. Students
+ * that contain the filter come first, followed by approximate matches from the trigram index. Every new filter result is
+ * published with a single change event.
+ * @author Dovydas Rupsys
+ */
+public class StudentListModel extends AbstractListModel<Student> {
+	private static final long serialVersionUID = 1L;
+	private static final int FILTER_DELAY = 150;					//Milliseconds to wait after the last filter change before matching
+	private static final int CANCEL_CHECK_INTERVAL = 4096;			//Students matched between checks if the search was replaced
+	private static final int MIN_FUZZY_LENGTH = 3;					//Shortest filter that is also matched approximately
+	private static final int FUZZY_LIMIT = 100;						//Largest number of approximate matches displayed
+
+	private StudentSearchIndex _index;								//All students, the model displays a part of them
+	private String[] _keys;											//Lower case search keys, in the same order as the students
+	private Matches _matches;										//Students that match the current filter
+	private String _filter;											//Lower case filter that produced the matches
+	private String _pendingFilter;									//Lower case filter waiting for the timer
+	private SwingWorker<Matches, Void> _search;						//Search that is running, null if there is none
+	private Timer _filterTimer;										//Starts the search once typing stops
+
+	/**
+	 * Indexes of the students that match a filter.
+	 */
+	private static class Matches {
+		private int[] _ids;											//Indexes of the matching students, exact matches first
+		private int _exactCount;									//Number of students that contain the filter
+		private int _count;											//Number of used entries in _ids
+	}
+
+	//starts matching the filter that was set last
+	private ActionListener _filterEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			startSearch(_pendingFilter);
+		}
+	};
+
+	/**
+	 * Constructs a model that displays all students.
+	 * @param index Index of students, students added to it later are displayed after studentsAdded is called.
+	 */
+	public StudentListModel(StudentSearchIndex index) {
+		_index = index;
+		_keys = new String[0];
+		_matches = new Matches();
+		_matches._ids = new int[0];
+		_filter = "";
+		_pendingFilter = "";
+
+		_filterTimer = new Timer(FILTER_DELAY, _filterEvent);
+		_filterTimer.setRepeats(false);
+
+		studentsAdded();
+	}
+
+	/**
+	 * Creates the search key of a student.
+	 * @param student Student to be searched.
+	 * @return Lower case text that filters are matched against.
+	 */
+	private static String foldKey(Student student) {
+		return student.toString().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Creates search keys for students that were added to the index and matches the filter again straight away.
+	 */
+	public void studentsAdded() {
+		int known = _keys.length;
+		int size = _index.size();
+		if (size == known)
+			return;
+
+		// the array is replaced rather than changed, so a search running in the background keeps a consistent copy
+		String[] keys = Arrays.copyOf(_keys, size);
+		for (int i = known; i < keys.length; i++) {
+			keys[i] = foldKey(_index.getStudent(i));
+		}
+		_keys = keys;
+
+		// a search that started before the students were added would not see them
+		if (_search != null) {
+			_search.cancel(false);
+			_search = null;
+		}
+
+		showMatches(_pendingFilter, match(_index, keys, _pendingFilter, null, null));
+	}
+
+	/**
+	 * Sets the filter. Matching starts once the filter has not changed for a moment.
+	 * @param filter Text that must be found in the name or number of a student.
+	 */
+	public void setFilter(String filter) {
+		_pendingFilter = filter.toLowerCase(Locale.ROOT);
+		_filterTimer.restart();
+	}
+
+	/**
+	 * Finds the students that match a filter.
+	 * @param index Index used for approximate matches.
+	 * @param keys Search keys of the students.
+	 * @param filter Lower case filter.
+	 * @param previous Matches of a filter that is contained in this filter or null to search all students.
+	 * @param worker Worker that runs the search, checked for cancellation, or null.
+	 * @return Matching students or null if the search was cancelled.
+	 */
+	private static Matches match(StudentSearchIndex index, String[] keys, String filter, Matches previous, SwingWorker<?, ?> worker) {
+		int candidates = previous != null ? previous._exactCount : keys.length;
+		Matches matches = new Matches();
+		matches._ids = new int[candidates];
+		boolean[] exact = new boolean[keys.length];
+
+		for (int i = 0; i < candidates; i++) {
+			if (worker != null && i % CANCEL_CHECK_INTERVAL == 0 && worker.isCancelled())
+				return null;
+
+			int student = previous != null ? previous._ids[i] : i;
+			if (keys[student].contains(filter)) {
+				matches._ids[matches._count++] = student;
+				exact[student] = true;
+			}
+		}
+
+		matches._exactCount = matches._count;
+
+		// approximate matches follow the exact ones, students the keys do not know yet are left for the next update
+		if (filter.trim().length() >= MIN_FUZZY_LENGTH) {
+			int[] fuzzy = index.search(filter, FUZZY_LIMIT);
+			matches._ids = Arrays.copyOf(matches._ids, matches._count + fuzzy.length);
+
+			for (int i = 0; i < fuzzy.length; i++) {
+				if (fuzzy[i] < keys.length && !exact[fuzzy[i]])
+					matches._ids[matches._count++] = fuzzy[i];
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Matches a filter in the background, replacing a search that is still running.
+	 * @param filter Lower case filter.
+	 */
+	private void startSearch(final String filter) {
+		if (_search != null)
+			_search.cancel(false);
+
+		if (filter.equals(_filter)) {
+			_search = null;
+			return;
+		}
+
+		// a filter that contains the current filter can only be contained by students that contain the current filter
+		final Matches previous = filter.contains(_filter) ? _matches : null;
+		final String[] keys = _keys;
+
+		_search = new SwingWorker<Matches, Void>() {
+			@Override
+			protected Matches doInBackground() throws Exception {
+				return match(_index, keys, filter, previous, this);
+			}
+
+			@Override
+			protected void done() {
+				// results of a search that was replaced are dropped
+				if (_search != this || isCancelled())
+					return;
+
+				_search = null;
+
+				try {
+					showMatches(filter, get());
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+
+		_search.execute();
+	}
+
+	/**
+	 * Replaces the matches and notifies the list with one event.
+	 * @param filter Filter that produced the matches.
+	 * @param matches Matching students.
+	 */
+	private void showMatches(String filter, Matches matches) {
+		int oldCount = _matches._count;
+
+		_filter = filter;
+		_matches = matches;
+
+		int changed = Math.max(oldCount, matches._count);
+		if (changed > 0)
+			fireContentsChanged(this, 0, changed - 1);
+	}
+
+	@Override
+	public int getSize() {
+		return _matches._count;
+	}
+
+	@Override
+	public Student getElementAt(int index) {
+		return _index.getStudent(_matches._ids[index]);
+	}
+}
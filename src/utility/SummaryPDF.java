@@ -0,0 +1,130 @@
+package utility;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import data.Assessment;
+import data.LoadProgress;
+import data.Result;
+
+/**
+ * Generates a class list pdf with a row for every result of every assessment. The rows are read from the result stores of
+ * the assessments as they are written, and the table is added to the document as an incomplete table every few hundred
+ * rows, so the rows that were finished are written out and released. The memory used does not depend on the number of rows.
+ * The result stores are read while the pdf is written, so results must not be imported until it is finished (see
+ * MainWindow.exportSummaryPdf).
+ * @author Dovydas Rupsys
+ */
+public class SummaryPDF {
+	public static final int CHUNK_ROWS = 500;						//Rows added to the table before the finished rows are written
+	// header cells of the table, repeated on every page
+	private static final PdfPCell[] HEADERS = CreatePDF.createHeaderCells("Assessment ", "Student Number ", "Student Name ", "Mark ", "Grade ");
+
+	private ArrayList<Assessment> _assessments;						//Assessments whose results are listed
+	private File _file;												//File the pdf is saved to
+
+	/**
+	 * Prepares a class list of the results of some assessments. The file is written when write is called.
+	 * @param assessments Assessments whose results are listed, in the order they are listed.
+	 * @param file File the pdf is saved to.
+	 */
+	public SummaryPDF(ArrayList<Assessment> assessments, File file) {
+		_assessments = assessments;
+		_file = file;
+	}
+
+	/**
+	 * Counts the rows of the class list.
+	 * @return Number of results of all assessments.
+	 */
+	public long getRowCount() {
+		long rows = 0;
+		for (int i = 0; i < _assessments.size(); i++) {
+			rows += _assessments.get(i).getResultsSize();
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Writes the class list.
+	 * @param progress Progress counted in rows, checked between rows to find out if the user cancelled.
+	 * @return true if the pdf was written, false if it was cancelled and no file was written.
+	 * @throws IOException If the file could not be written.
+	 * @throws DocumentException If a row could not be added to the pdf.
+	 */
+	public boolean write(LoadProgress progress) throws IOException, DocumentException {
+		File temp = new File(_file.getPath() + ".part");
+		boolean written = false;
+
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+			Document document = new Document();
+			PdfWriter.getInstance(document, out);
+			document.open();
+
+			document.add(new Paragraph("Class list", CreatePDF.HEADER_FONT));
+			document.add(new Paragraph(" "));
+
+			// the table is written in chunks, every add writes the rows that are finished and drops them from the table
+			PdfPTable table = CreatePDF.createTable(HEADERS);
+			table.setWidthPercentage(100);
+			table.setComplete(false);
+			int rows = 0;
+
+			for (int i = 0; i < _assessments.size(); i++) {
+				Assessment assessment = _assessments.get(i);
+				String name = assessment.toString();
+
+				for (int j = 0; j < assessment.getResultsSize(); j++) {
+					if (progress.isCancelled())
+						return false;
+
+					Result result = assessment.getResult(j);
+					table.addCell(name);
+					table.addCell(result.getCandidateKey());
+					table.addCell(String.valueOf(result.getCandidateName()));
+					table.addCell(result.getMark());
+					table.addCell(result.getGrade());
+
+					if (++rows == CHUNK_ROWS) {
+						document.add(table);
+						progress.addProcessed(rows, rows);
+						rows = 0;
+					}
+				}
+			}
+
+			// the last rows are written with the table marked as complete, so its end is drawn
+			table.setComplete(true);
+			document.add(table);
+			progress.addProcessed(rows, rows);
+
+			document.close();
+			written = true;
+		} finally {
+			// a cancelled or failed pdf is not left behind
+			if (!written)
+				temp.delete();
+		}
+
+		if (_file.exists() && !_file.delete()) {
+			temp.delete();
+			throw new IOException("Could not replace " + _file.getPath());
+		}
+		if (!temp.renameTo(_file))
+			throw new IOException("Could not create " + _file.getPath());
+
+		return true;
+	}
+}
@@ -7,9 +7,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.io.ByteArrayOutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
@@ -29,13 +29,10 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
-import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import data.ParticipantTableWalker;
 
 /**
  * Creates a JavaFX browser window. This window is used to navigate to the right web page which then can be scraped for participant data.
@@ -137,37 +134,33 @@ public class BrowserWindow extends JDialog{
 	private ActionListener _btnScrapeEvent = new ActionListener() {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			//gets the document of the browser object
-			Document document = _engine.getDocument();
-			
-			//variables to store html data
-			ByteArrayOutputStream htmlBytes = new ByteArrayOutputStream();
-			String html = "";
-			
-			//tries to convert raw data to html
-			try {
-				Transformer converter = TransformerFactory.newInstance().newTransformer();
-				converter.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-				
-				converter.transform(new DOMSource(document), new StreamResult(htmlBytes));				
-				html = new String(htmlBytes.toByteArray(), "UTF-8").toLowerCase();
-			} catch (Exception ex) {
-				ex.printStackTrace();
-			}
-			
-			//looks for participant table
-			int beginIndex = html.indexOf("<table id=\"participants\"");
-			int endIndex = html.indexOf("</table>", beginIndex);
-			
-			//if this table exists in the current page then pass it to the main window
-			if (beginIndex != -1 && endIndex != -1){
-				_window.extractDataFromHtmlTable(html.substring(beginIndex, endIndex));
-				setVisible(false);
-			}
-			//otherwise display an informing message
-			else{
-				JOptionPane.showMessageDialog(BrowserWindow.this, "No participant data was found on this page.");
-			}
+			//the document of the browser can only be read on the JavaFX thread
+			Platform.runLater(_scrapeTask);
+		}
+	};
+
+	//reads the participants table from the document of the browser and passes its cells to the main window
+	private Runnable _scrapeTask = new Runnable() {
+		@Override
+		public void run() {
+			//finds the participant table by its id
+			Element table = ParticipantTableWalker.findTable(_engine.getDocument());
+			final ArrayList<String> cells = table != null ? ParticipantTableWalker.readCells(table) : null;
+
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					//if this table exists in the current page then pass it to the main window
+					if (cells != null){
+						_window.extractParticipantData(cells);
+						setVisible(false);
+					}
+					//otherwise display an informing message
+					else{
+						JOptionPane.showMessageDialog(BrowserWindow.this, "No participant data was found on this page.");
+					}
+				}
+			});
 		}
 	};
 
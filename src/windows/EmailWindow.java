@@ -8,6 +8,9 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
 
 import javax.mail.MessagingException;
 import javax.swing.DefaultBoundedRangeModel;
@@ -24,6 +27,7 @@ import javax.swing.JPasswordField;
 import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.border.EmptyBorder;
 
@@ -32,6 +36,7 @@ import utility.EmailHost;
 import utility.EmailSettings;
 import data.Student;
 import data.StudentResult;
+import data.StudentSearchIndex;
 
 /**
  * A window designed to write and send results to students.
@@ -39,9 +44,13 @@ import data.StudentResult;
  */
 public class EmailWindow extends JDialog {
 	private static final long serialVersionUID = 1L;
+	private static final int MATCH_LIMIT = 50;								//largest number of similar students selected by a search
 	
 	private MainWindow _window;												//reference to the main window
 	private DefaultListModel<JCheckBox> _checkboxListModel;					//reference to the items in the list box
+	private ArrayList<Student> _checkboxStudents;							//students of the items in the list box, in the same order
+	private HashMap<Student, Integer> _checkboxRows;						//positions of the students in the list box
+	private JTextField _txtSearch;											//reference to the student search text field
 	private JList<JCheckBox> _checkboxList;									//reference to the list box of students
 	private JPanel _contentPanel;											//the panel that contains the content, email or the preview panel
 	private JPanel _emailPanel;												//contains components that allow to write header and footer
@@ -73,6 +82,81 @@ public class EmailWindow extends JDialog {
 		}
 	};
 	
+	//button event that selects the students matching the search text, exact matches and then similar ones
+	private ActionListener _btnSelectMatchesEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			String query = _txtSearch.getText().trim();
+			if (query.isEmpty())
+				return;
+			
+			LinkedHashSet<Integer> rows = new LinkedHashSet<Integer>();
+			
+			//students whose name or number contains the text
+			String folded = query.toLowerCase(Locale.ROOT);
+			for (int i = 0; i < _checkboxStudents.size(); i++) {
+				if (_checkboxStudents.get(i).toString().toLowerCase(Locale.ROOT).contains(folded))
+					rows.add(i);
+			}
+			
+			//students that are similar to the text, if they are in the list
+			StudentSearchIndex index = _window.getDirectory().getSearchIndex();
+			int[] similar = index.search(query, MATCH_LIMIT);
+			for (int i = 0; i < similar.length; i++) {
+				Integer row = _checkboxRows.get(index.getStudent(similar[i]));
+				if (row != null)
+					rows.add(row);
+			}
+			
+			if (rows.isEmpty()) {
+				JOptionPane.showMessageDialog(
+						EmailWindow.this, 
+						"No students in the list match \"" + query + "\".",
+						"Information", 
+						JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
+			
+			for (int row : rows) {
+				_checkboxList.addSelectionInterval(row, row);
+			}
+			_checkboxList.ensureIndexIsVisible(rows.iterator().next());
+		}
+	};
+	
+	//button event that selects the students that did not visit a module for some days
+	private ActionListener _btnSelectInactiveEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			ArrayList<Student> inactive = _window.askInactiveStudents(EmailWindow.this);
+			if (inactive == null)
+				return;
+			
+			//only students that are in the list can be selected
+			int first = -1;
+			for (int i = 0; i < inactive.size(); i++) {
+				Integer row = _checkboxRows.get(inactive.get(i));
+				if (row == null)
+					continue;
+				
+				_checkboxList.addSelectionInterval(row, row);
+				if (first == -1 || row < first)
+					first = row;
+			}
+			
+			if (first == -1) {
+				JOptionPane.showMessageDialog(
+						EmailWindow.this, 
+						"None of the " + inactive.size() + " inactive students are in the list.",
+						"Information", 
+						JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
+			
+			_checkboxList.ensureIndexIsVisible(first);
+		}
+	};
+	
 	//button event that displays the preview panel in the content area
 	private ActionListener _btnEmailNextEvent = new ActionListener() {
 		@Override
@@ -88,7 +172,7 @@ public class EmailWindow extends JDialog {
 			}
 			
 			//creates the preview text
-			Student firstSelectedStudent = _window.findStudent(_checkboxListModel.get(_checkboxList.getSelectedIndices()[0]).getText());
+			Student firstSelectedStudent = _checkboxStudents.get(_checkboxList.getSelectedIndices()[0]);
 			_jtaPreview.setText(createEmailMessage(firstSelectedStudent));
 			
 			//displays the preview panel in the content area
@@ -159,7 +243,7 @@ public class EmailWindow extends JDialog {
 						//send results to every selected student
 						for (int i = 0; i < selectedItems.length; i++) {
 							//gets the student's object
-							Student student = _window.findStudent(_checkboxListModel.get(selectedItems[i]).getText());
+							Student student = _checkboxStudents.get(selectedItems[i]);
 							String message = createEmailMessage(student);
 							
 							try {
@@ -205,7 +289,7 @@ public class EmailWindow extends JDialog {
 		String resultsString = "Results for student: " + student + "\n";
 		for (int i = 0; i < student.getStudentResultsSize(); i++) {
 			StudentResult result = student.getStudentResult(i);
-			resultsString +=  "\tAssessment: " + result.getAssessmentName() + " - Result Achieved: " + result.getMark() + "%";
+			resultsString +=  "\tAssessment: " + result.getAssessmentName() + " - Result Achieved: " + result.getMarkText() + "%";
 			
 			if (i < student.getStudentResultsSize() - 1)
 				resultsString += "\n";
@@ -236,8 +320,14 @@ public class EmailWindow extends JDialog {
 		selectNone.addActionListener(_btnSelectNoneEvent);
 		studentListTopPanel.add(selectNone, BorderLayout.EAST);
 		
+		JButton selectInactive = new JButton("Select Inactive");
+		selectInactive.addActionListener(_btnSelectInactiveEvent);
+		studentListTopPanel.add(selectInactive, BorderLayout.SOUTH);
+		
 		//creates student list with checkboxes
 		_checkboxListModel = new DefaultListModel<JCheckBox>();
+		_checkboxStudents = new ArrayList<Student>();
+		_checkboxRows = new HashMap<Student, Integer>();
 		_checkboxList = new JList<JCheckBox>(_checkboxListModel);
 		_checkboxList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 		
@@ -262,6 +352,18 @@ public class EmailWindow extends JDialog {
 		scrollPane.setBorder(new EmptyBorder(2, 0, 0, 0));
 		studentListPanel.add(scrollPane, BorderLayout.CENTER);
 		
+		//creates search field and select matches button at the bottom of the students' list
+		JPanel studentListBottomPanel = new JPanel(new BorderLayout());
+		studentListPanel.add(studentListBottomPanel, BorderLayout.SOUTH);
+		
+		_txtSearch = new JTextField();
+		_txtSearch.addActionListener(_btnSelectMatchesEvent);
+		studentListBottomPanel.add(_txtSearch, BorderLayout.CENTER);
+		
+		JButton selectMatches = new JButton("Select Matches");
+		selectMatches.addActionListener(_btnSelectMatchesEvent);
+		studentListBottomPanel.add(selectMatches, BorderLayout.EAST);
+		
 		//adds a student to the list of students if that student has any grades associated
 		for (int i = 0; i < students.size(); i++) {
 			if (students.get(i).getStudentResultsSize() == 0)
@@ -269,6 +371,8 @@ public class EmailWindow extends JDialog {
 			
 			//creates a checklist with the name of the student and adds it to the list of students.
 			_checkboxListModel.addElement(new JCheckBox(students.get(i).toString()));
+			_checkboxRows.put(students.get(i), _checkboxStudents.size());
+			_checkboxStudents.add(students.get(i));
 		}
 	}
 	
@@ -1,31 +1,52 @@
 package windows;
 
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.GridLayout;
 import java.awt.event.MouseAdapter;
+import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.UnsupportedEncodingException;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
 
-import javax.swing.DefaultListModel;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.table.TableModel;
 
-import studentdata.Connector;
-import studentdata.DataTable;
+import utility.CreatePDF;
+import utility.CsvReader;
 import utility.ResultTabbedPane;
+import utility.StudentListModel;
 import data.Assessment;
+import data.ImportFingerprint;
+import data.ImportHistory;
+import data.ParticipationHistory;
+import data.IncrementalImport;
+import data.ParticipationImporter;
+import data.ResultLoader;
+import data.RosterBuilder;
+import data.RosterCache;
+import data.SessionSnapshot;
 import data.UnitParticipation;
-import data.Result;
 import data.Student;
-import data.StudentResult;
+import data.StudentDirectory;
 
 /**
  * The main window of the application.
@@ -34,12 +55,20 @@ import data.StudentResult;
 public class MainWindow extends JFrame {
 	private static final long serialVersionUID = 1L;
 	private ArrayList<Student> _students; 										//Contains all student objects
+	private StudentDirectory _directory;										//Indexes students by student number, email and anonymous codes
 	private ArrayList<Assessment> _assessments; 								//Contains all loaded assessments
 	public JList<Student> _jlsStudents; 										//Reference for the graphical student list
-	private DefaultListModel<Student> _jlsModel; 								//Reference for the filtered student list
+	private StudentListModel _jlsModel; 										//Reference for the filtered student list
 	private JTextField _txtListFilter; 											//Reference for the filter text field
 	private StudentInfoWindow _wndPopUp = null;  								//Creates a reference to the info pop-up window
 	private ResultTabbedPane _tpResult;
+	private ResultLoadWorker _resultLoad = null;								//Loads exam results in the background, null when nothing is loading
+	private SummaryPdfWorker _summaryExport = null;								//Writes the class list from the result stores, null when it is not running
+	private ImportHistory _importHistory;										//Row fingerprints of imported exam result files
+	private RosterLoadWorker _rosterLoad = null;								//Fetches the roster in the background, null when nothing is fetched
+	private RosterBuilder _pendingRoster = null;								//Fetched roster waiting for results to finish loading
+	private boolean _showRosterSummary = false;									//true when the user asked for the roster being fetched
+	private ParticipationHistory _history;										//Log of every participation scrape
 	
 	// Creates mouse click event for the graphical student list
 	private MouseAdapter _listListener = new MouseAdapter() {
@@ -51,11 +80,11 @@ public class MainWindow extends JFrame {
 
 			// if window does not exist, make a new window
 			if (_wndPopUp == null) {
-				_wndPopUp = new StudentInfoWindow(_jlsStudents.getSelectedValue());
+				_wndPopUp = new StudentInfoWindow(_jlsStudents.getSelectedValue(), _history);
 			} else {
 				// if window already exists, destroy and make a new one
 				_wndPopUp.dispose();
-				_wndPopUp = new StudentInfoWindow(_jlsStudents.getSelectedValue());
+				_wndPopUp = new StudentInfoWindow(_jlsStudents.getSelectedValue(), _history);
 			}
 		}
 	};
@@ -65,78 +94,45 @@ public class MainWindow extends JFrame {
 		// Implements a method for each of the 3 document events
 		@Override
 		public void removeUpdate(DocumentEvent e) {
-			updateStudentList();
+			_jlsModel.setFilter(_txtListFilter.getText());
 		}
 
 		@Override
 		public void insertUpdate(DocumentEvent e) {
-			updateStudentList();
+			_jlsModel.setFilter(_txtListFilter.getText());
 		}
 
 		@Override
 		public void changedUpdate(DocumentEvent e) {
-			updateStudentList();
+			_jlsModel.setFilter(_txtListFilter.getText());
 		}
 	};
 
-	/**
-	 * Checks if the users data, name or id, contains the filter passed.
-	 * @param student Student that will be checked.
-	 * @param pattern String that must be found within the student's data.
-	 * @return true if pattern was found, false if it was not.
-	 */
-	private boolean studentDataMatchesString(Student student, String pattern) {
-		return student.toString().toLowerCase().contains(pattern.toLowerCase());
-	}
-
-	/**
-	 * Filters the students list, based on the input and updates JList
-	 */
-	private void updateStudentList() {
-		// Clears the graphical list of student
-		_jlsModel.clear();
+	// Clears the selection whenever the filtered list is replaced, so that it never points past the end of the list
+	private ListDataListener _filterResultEvent = new ListDataListener() {
+		@Override
+		public void contentsChanged(ListDataEvent e) {
+			_jlsStudents.clearSelection();
+		}
 
-		// Gets the filter of the text field
-		String filter = _txtListFilter.getText();
+		@Override
+		public void intervalAdded(ListDataEvent e) {
+		}
 
-		// Checks if any of the students have the filter as a substring
-		for (int i = 0; i < _students.size(); i++) {
-			if (studentDataMatchesString(_students.get(i), filter)) {
-				_jlsModel.addElement(_students.get(i));
-			}
+		@Override
+		public void intervalRemoved(ListDataEvent e) {
 		}
-	}
+	};
 
-	/**
-	 * Creates a result and adds it to an assessment. In addition creates assessment class if that particular assessment doesn't exist the list of assessments provided.
-	 * @param assessments A list of assessments created during this file loading operation.
-	 * @param line processed data in the following format { module, assessment, code, mark, grade, name }
-	 */
-	private void createResult(ArrayList<Assessment> assessments, String[] line) {
-		// Constants to aid readability
-		final int MODULE = 0; final int ASSESSMENT = 1; final int CODE = 2; final int MARK = 3; final int GRADE = 4; final int NAME = 5;
-
-		Assessment assessment = new Assessment(line[MODULE], line[ASSESSMENT]); // creates assessment with data on the line
-		int index = assessments.indexOf(assessment); 							// checks if this type of assessment exists and gets its index
-
-		// if index is more then -1 then this type of assessment exists
-		if (index != -1)
-			// get that assessment instead
-			assessment = assessments.get(index);
-		else
-			// add this assessment to the list of assessments
-			assessments.add(assessment);
-
-		// Creates a result with data on this line
-		Result result = new Result(line[GRADE], line[MARK], line[CODE]);
-		result.setCandidateName(line[NAME]);
-
-		// if this result already exists then ignore it
-		if (!assessment.containsResult(result)) {
-			assessment.addResult(result);
+	// Saves the session when the window is closed, so that it can be restored on the next start
+	private WindowAdapter _closingEvent = new WindowAdapter() {
+		@Override
+		public void windowClosing(WindowEvent e) {
+			saveSession();
+			closeHistory();
 		}
-	}
-	
+	};
+
 	/**
 	 * Constructs the main window of the application.
 	 */
@@ -145,14 +141,24 @@ public class MainWindow extends JFrame {
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);							//Terminates application whenever window close event is executed
 		setSize(new Dimension(640, 480));										//Sets window's default size
 		setJMenuBar(new MainWindowMenu(this));									//Assigns the main window menu bar to this window
+		addWindowListener(_closingEvent);										//Saves the session before the application terminates
 
 		//Creates the panel for the left side of the window
 		JPanel leftPanel = new JPanel(new BorderLayout());
 
 		leftPanel.setPreferredSize(new Dimension(150, 0));
 		
+		//Instantiates the list of students and the list that will hold assessment information
+		_students = new ArrayList<Student>();
+		_directory = new StudentDirectory();
+		_assessments = new ArrayList<Assessment>();
+		_importHistory = new ImportHistory();
+		_history = new ParticipationHistory(new File(ParticipationHistory.DEFAULT_PATH));
+		_history.compact(System.currentTimeMillis());
+		
 		//Creates a graphical list that displays student names and their ids
-		_jlsModel = new DefaultListModel<Student>();
+		_jlsModel = new StudentListModel(_directory.getSearchIndex());
+		_jlsModel.addListDataListener(_filterResultEvent);
 		_jlsStudents = new JList<Student>(_jlsModel);
 		//Assigns an event that displays info window when an item in the graphical list of students is pressed
 		_jlsStudents.addMouseListener(_listListener);
@@ -169,113 +175,198 @@ public class MainWindow extends JFrame {
 		//Adds the left panel to main window
 		add(leftPanel, BorderLayout.WEST);
 		
-		//Instantiates the list of students and creates some temporary objects
-		_students = new ArrayList<Student>();
-		loadStudentData();
-		
-		//Instantiates the list that will hold assessment information
-		_assessments = new ArrayList<Assessment>();
-				
 		//Creates and adds the tabbed pane to the window.
 		_tpResult = new ResultTabbedPane(this);
 		add(_tpResult, BorderLayout.CENTER);
 
+		//Shows the previous session or the cached roster straight away, the current roster is fetched in the background
+		if (!restoreSession())
+			restoreRoster();
+
 		// Make the window visible
 		setVisible(true);
+
+		loadStudentData(false);
 	}
 
 	/**
-	 * Looks for a student in the list of student loaded from the interned.
-	 * @param pattern String that must be part of the student's name or id.
-	 * @return The first student's object that matches provided pattern.
+	 * Removes the specified assessment from the list of assessments.
+	 * @param assessment Assessment to be removed.
 	 */
-	public Student findStudent(String pattern) {
-		for (int i = 0; i < _students.size(); i++) {
-			if (studentDataMatchesString(_students.get(i), pattern)) {
-				return _students.get(i);
-			}
+	public void removeAssessment(Assessment assessment){
+		_assessments.remove(assessment);
+		
+		//files that filled the assessment are imported in full the next time
+		_importHistory.forget(assessment);
+	}
+	
+	/**
+	 * Restores students and assessments saved by the previous session.
+	 * @return true if a session was restored, false if there was no saved session or it could not be read.
+	 */
+	private boolean restoreSession() {
+		File file = new File(SessionSnapshot.DEFAULT_PATH);
+		if (!file.exists())
+			return false;
+
+		SessionSnapshot snapshot;
+		try {
+			snapshot = SessionSnapshot.load(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(
+					this,
+					"The saved session could not be restored: " + e.getMessage() + " Student data will be loaded from the server.",
+					"Warning",
+					JOptionPane.WARNING_MESSAGE);
+			return false;
 		}
 
-		return null;
+		for (Student student : snapshot.getStudents()) {
+			_students.add(student);
+			_directory.addStudent(student);
+		}
+
+		for (Assessment assessment : snapshot.getAssessments()) {
+			_assessments.add(assessment);
+			_tpResult.newResultTab(assessment);
+		}
+
+		_importHistory = snapshot.getImportHistory();
+
+		_jlsModel.studentsAdded();
+		return true;
 	}
-	
+
 	/**
-	 * Searches for a student by his email address.
-	 * @param email Email address of the student.
-	 * @return Returns the student object or null if no student was found.
+	 * Waits for the participation history to be written and closes it.
 	 */
-	public Student findStudentByEmail(String email){
-		for (int i = 0; i < _students.size(); i++) {
-			if (_students.get(i).getEmail().equals(email)) {
-				return _students.get(i);
-			}
+	private void closeHistory() {
+		try {
+			_history.close();
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(
+					this,
+					"Participation history could not be written: " + e.getMessage(),
+					"Warning",
+					JOptionPane.WARNING_MESSAGE);
 		}
+	}
 
-		return null;
+	/**
+	 * Saves students and assessments, so that they can be restored the next time the application starts.
+	 * @return true if the session was saved.
+	 */
+	public boolean saveSession() {
+		try {
+			SessionSnapshot.save(new File(SessionSnapshot.DEFAULT_PATH), _students, _assessments, _importHistory);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(
+					this,
+					"The session could not be saved: " + e.getMessage(),
+					"Error",
+					JOptionPane.ERROR_MESSAGE);
+			return false;
+		}
 	}
-	
+
 	/**
-	 * Removes the specified assessment from the list of assessments.
-	 * @param assessment Assessment to be removed.
+	 * Shows the roster that was cached when the server was last reached. Used when there is no saved session.
 	 */
-	public void removeAssessment(Assessment assessment){
-		_assessments.remove(assessment);
+	private void restoreRoster() {
+		try {
+			ArrayList<String[]> rows = RosterCache.load(new File(RosterCache.DEFAULT_PATH));
+			if (rows != null)
+				applyRoster(new RosterBuilder(rows));
+		} catch (IOException e) {
+			// the roster is fetched from the server anyway
+			e.printStackTrace();
+		}
 	}
-	
+
 	/**
-	 * Establishes connection to the server and loads student data into the
-	 * graphical student list.
+	 * Starts fetching student data from the server in the background. Students are added to the graphical student list once the
+	 * roster arrives, students that are already loaded keep their codes, results and visits.
+	 * @param showSummary true to tell the user what changed once the roster was applied.
 	 */
-	public void loadStudentData() {
-		// Object used to make a connection to the server
-		Connector c = new Connector();
-
-		// If connection is successful then
-		if (c.connect("DDN", "2f39f5181c4edcb665856d25b68b7be3")) {
-			// Get data from the server in a form of a spreadsheet
-			DataTable data = c.getData();
-
-			// An array that will store data of a single student
-			String[] student = new String[4];
-
-			// loops though the spreadsheet and creates student objects.
-			for (int y = 0; y < data.getRowCount(); y++) {
-				for (int x = 0; x < data.getColumnCount(); x++) {
-					try {
-						student[x] = new String(data.getCell(y, x).getBytes(), "UTF-8");
-					} catch (UnsupportedEncodingException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
-					}
-				}
-				
-				_students.add(new Student(student[2], student[0], student[1], student[3]));
-			}
+	public void loadStudentData(boolean showSummary) {
+		// only one roster is fetched at a time
+		if (_rosterLoad != null)
+			return;
+
+		_showRosterSummary = showSummary;
+		_rosterLoad = new RosterLoadWorker(this);
+		_rosterLoad.execute();
+	}
 
-			// Updates graphical student list.
-			updateStudentList();
+	/**
+	 * Called by the roster loader when it finishes.
+	 * @param roster Decoded roster or null if the server could not be reached.
+	 */
+	void rosterLoadFinished(RosterBuilder roster) {
+		_rosterLoad = null;
+
+		if (roster != null) {
+			// results that are loading are de-anonymised with the directory, so the roster waits for them
+			if (_resultLoad != null)
+				_pendingRoster = roster;
+			else
+				applyRoster(roster);
+
+			return;
 		}
-		// if connection is not successful then
-		else {
-			// Display an informing message
-			int dialogResult = JOptionPane.showConfirmDialog(
-							this,
-							"There was a problem loading student data from the server. Do you wish to continue?",
-							"Warning",
-							JOptionPane.YES_NO_OPTION,
-							JOptionPane.WARNING_MESSAGE);
-
-			// If user chooses to, terminate application
-			if (dialogResult == JOptionPane.NO_OPTION)
-				dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+
+		// students from the previous session or the cache are still usable
+		if (!_students.isEmpty()) {
+			JOptionPane.showMessageDialog(
+					this,
+					"Student data could not be refreshed from the server. The students that were loaded before are shown.",
+					"Warning",
+					JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		// Display an informing message
+		int dialogResult = JOptionPane.showConfirmDialog(
+						this,
+						"There was a problem loading student data from the server. Do you wish to continue?",
+						"Warning",
+						JOptionPane.YES_NO_OPTION,
+						JOptionPane.WARNING_MESSAGE);
+
+		// If user chooses to, terminate application
+		if (dialogResult == JOptionPane.NO_OPTION)
+			dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+	}
+
+	/**
+	 * Applies a roster to the loaded students and updates the graphical student list.
+	 * @param roster Decoded roster.
+	 */
+	private void applyRoster(RosterBuilder roster) {
+		roster.apply(_directory, _students);
+
+		// Updates graphical student list.
+		_jlsModel.studentsAdded();
+
+		if (_showRosterSummary) {
+			_showRosterSummary = false;
+			JOptionPane.showMessageDialog(this, roster.getSummary(), "Student data refreshed", JOptionPane.INFORMATION_MESSAGE);
 		}
 	}
 
 	/**
 	 * Assigns anonymous codes to the users using the data that was provided.
-	 * @param fileData Array list of student numbers and anonymous codes.
+	 * @param reader Csv reader over rows of student numbers and anonymous codes.
+	 * @throws IOException If the file could not be read.
 	 */
-	public void loadAnonymousCodes(ArrayList<String[]> fileData) {
+	public void loadAnonymousCodes(CsvReader reader) throws IOException {
+		// codes must not change while results are being de-anonymised in the background
+		if (isLoadingResults())
+			return;
+
 		// Constants to aid code readability
 		final int STUDENT_NUMBER = 0;
 		final int ANONYMOUS_CODE = 1;
@@ -285,13 +376,18 @@ public class MainWindow extends JFrame {
 		int missingCount = 0;
 
 		// loops though the code data provided and...
-		for (String[] data : fileData) {
+		String[] data;
+		while ((data = reader.readRow()) != null) {
+			// skips rows that do not contain both a student number and a code
+			if (data.length <= ANONYMOUS_CODE)
+				continue;
+			
 			// Searches for user with specified student number
-			Student student = findStudent(data[STUDENT_NUMBER]);
+			Student student = _directory.findByNumber(data[STUDENT_NUMBER].trim());
 			// if such student is found then...
 			if (student != null) {
 				// assign anonymous code to that user and import count.
-				student.addAnonymousCode(data[ANONYMOUS_CODE]);
+				_directory.addAnonymousCode(student, data[ANONYMOUS_CODE]);
 				++importCount;
 			}
 			else {
@@ -309,94 +405,289 @@ public class MainWindow extends JFrame {
 	}
 
 	/**
-	 * Processes exam result data and creates assessments in the tabbed pane.
-	 * @param data Unprocessed exam data read from the file.
+	 * Starts loading an exam result file in the background. Assessments are added to the tabbed pane once the whole file was loaded.
+	 * If the file was imported before, only the rows that changed since then are applied.
+	 * @param file Exam result file to be loaded.
 	 */
-	public void loadExamResults(ArrayList<String[]> data) {
-		// Used to store mapped headers
-		HashMap<String, Integer> headers = new HashMap<String, Integer>();
-
-		// Gets the headers row from the data list
-		String[] header = data.get(0);
-		// Goes through every column in the header, removes unwanted characters and maps it to the index of the column
-		for (int i = 0; i < header.length; i++) {
-			String key = header[i].replaceAll("\"|#| ", "").toLowerCase();
-			headers.put(key, i);
+	public void loadExamResults(File file) {
+		// only one file is loaded at a time
+		if (isLoadingResults())
+			return;
+
+		// the class list reads the result stores while it is written, so they are not changed until it is finished
+		if (_summaryExport != null) {
+			JOptionPane.showMessageDialog(
+					this,
+					"The class list pdf is still being written. Wait for it to finish or cancel it first.",
+					"Information",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
 		}
 
-		//variables that track results that have students associated as well as stray results
-		int deanonymised = 0;
-		int unidentified = 0;
-		
-		//This array will hold all assessments loaded from one file
-		ArrayList<Assessment> assessments = new ArrayList<Assessment>();
-		
-		// Goes through the remaining rows
-		for (int i = 1; i < data.size(); i++) {
-			// gets the row
-			String[] line = data.get(i);
-
-			// removes unwanted characters from data and saves it
-			String module = line[headers.get("module")].replaceAll("\"|#", "");
-			String ass = line[headers.get("ass")].replaceAll("\"|#", "");
-			String code = line[headers.get("candkey")].replaceAll("#|\"", "").split("/")[0];
-			String mark = line[headers.get("mark")].replaceAll("\"|#", "");
-			String grade = line[headers.get("grade")].replaceAll("\"|#", "");
-			String name = "N/A";
-			
-			// tries to de-anonymises code
-			for (int j = 0; j < _students.size(); j++) {
-				Student s = _students.get(j);
-				String id = s.deAnonymiseCode(code);
-
-				//If student contained code specified then use student's id
-				if (!id.equals("")) {
-					code = id;
-					name = s.getName();
-					
-					//Creates student's result object and adds it to the list of student's results.
-					s.addResult(new StudentResult(module + " " + ass, mark, grade));
-					
-					++deanonymised;
-					break;
-				}
-			}
-			
-			if (name.equals("N/A"))
-				++unidentified;
-			
-			// Creates a result with processed data
-			createResult(assessments, new String[] { module, ass, code, mark, grade, name });
+		ImportFingerprint previous = _importHistory.find(file);
+
+		// a file with the same length and modification time as last time has nothing new, unless some of its candidate keys
+		// were not known then and belong to students now
+		if (previous != null && previous.isUnchanged(file) && !previous.hasNewlyIdentified(_directory)) {
+			JOptionPane.showMessageDialog(
+					this,
+					file.getName() + " has not changed since it was last imported.",
+					"Results load information",
+					JOptionPane.INFORMATION_MESSAGE);
+			return;
 		}
-		
-		//Adds loaded assessments to the list of all assessments
-		_assessments.addAll(assessments);
-		
-		//creates a tab for every assessment
+
+		_resultLoad = new ResultLoadWorker(this, file, _directory, previous);
+		_resultLoad.execute();
+	}
+
+	/**
+	 * Checks if an exam result file is being loaded and informs the user if it is.
+	 * @return true if a file is being loaded.
+	 */
+	private boolean isLoadingResults() {
+		if (_resultLoad == null)
+			return false;
+
+		JOptionPane.showMessageDialog(
+				this,
+				"Exam results are still being loaded. Wait for loading to finish or cancel it first.",
+				"Information",
+				JOptionPane.INFORMATION_MESSAGE);
+
+		return true;
+	}
+
+	/**
+	 * Called by the background loader when it finishes, successfully or not.
+	 */
+	void resultLoadFinished() {
+		_resultLoad = null;
+
+		// a roster that arrived while results were loading is applied now
+		if (_pendingRoster != null) {
+			applyRoster(_pendingRoster);
+			_pendingRoster = null;
+		}
+	}
+
+	/**
+	 * Adds loaded results to the students and creates assessments in the tabbed pane. Results of assessments that are already
+	 * loaded are added to the existing assessment instead.
+	 * @param file File the results were loaded from.
+	 * @param loader Loader with the processed exam data.
+	 * @param tableModels Table models of the loaded assessments, in the same order as the assessments.
+	 */
+	void displayExamResults(File file, ResultLoader loader, ArrayList<TableModel> tableModels) {
+		ArrayList<Assessment> assessments = loader.getAssessments();
+
+		//Adds de-anonymised results to the students they belong to
+		loader.applyStudentResults();
+
 		for (int i = 0; i < assessments.size(); i++) {
-			_tpResult.newResultTab(assessments.get(i));
+			Assessment assessment = assessments.get(i);
+			int existing = _assessments.indexOf(assessment);
+
+			//creates a tab for every new assessment
+			if (existing == -1) {
+				_assessments.add(assessment);
+				_tpResult.newResultTab(assessment, tableModels.get(i));
+				continue;
+			}
+
+			//otherwise adds results that are not there yet to the loaded assessment
+			Assessment loaded = _assessments.get(existing);
+			for (int j = 0; j < assessment.getResultsSize(); j++) {
+				if (!loaded.containsResult(assessment.getResult(j)))
+					loaded.addResult(assessment.getResult(j));
+			}
+
+			loader.getFingerprint().replaceAssessment(assessment, loaded);
+			_tpResult.refreshResultTab(loaded);
 		}
+
+		//remembers the rows of the file, so that the next version of it is imported incrementally
+		_importHistory.record(file, loader.getFingerprint());
 		
 		// Display message with load details.
 		JOptionPane.showMessageDialog(
 				this,
-				"In total there were " + deanonymised + " de-anonymised results and " + unidentified + " unidentified results.",
+				"In total there were " + loader.getDeanonymisedCount() + " de-anonymised results and " + loader.getUnidentifiedCount() + " unidentified results.",
 				"Results load information",
 				JOptionPane.INFORMATION_MESSAGE);
 	}
 	
 	/**
-	 * Takes in a html file in a form of a string and extracts participation data from it.
-	 * @param htmlTable raw table data in a form of html code.
+	 * Applies the rows of an exam result file that changed since it was last imported and reports what changed.
+	 * @param file File that was imported again.
+	 * @param changes Differences found by comparing the file with its previous import.
 	 */
-	public void extractDataFromHtmlTable(String htmlTable){
-		UnitParticipation participants = new UnitParticipation(
-				JOptionPane.showInputDialog("Enter the name of the module."),
-				htmlTable);
+	void applyIncrementalImport(File file, IncrementalImport changes) {
+		changes.apply(_directory, _assessments);
+
+		for (Assessment assessment : changes.getNewAssessments()) {
+			_assessments.add(assessment);
+			_tpResult.newResultTab(assessment);
+		}
+
+		for (Assessment assessment : changes.getUpdatedAssessments()) {
+			_tpResult.refreshResultTab(assessment);
+		}
+
+		_importHistory.record(file, changes.getFingerprint());
+
+		// Display message with import details.
+		JOptionPane.showMessageDialog(
+				this,
+				"Compared to the last import of " + file.getName() + " there were " + changes.getAddedCount() + " rows added, "
+						+ changes.getChangedCount() + " rows changed and " + changes.getRemovedCount() + " rows removed. "
+						+ changes.getUnchangedCount() + " rows did not change. " + changes.getUpdatedAssessments().size()
+						+ " assessments were updated and " + changes.getNewAssessments().size() + " were added.",
+				"Results import information",
+				JOptionPane.INFORMATION_MESSAGE);
+	}
+	
+	/**
+	 * Takes in the cells of a participants table and extracts participation data from them.
+	 * @param cells Text of the participation cells in table order.
+	 */
+	public void extractParticipantData(List<String> cells){
+		String module = JOptionPane.showInputDialog("Enter the name of the module.");
+
+		// nothing is extracted when the dialog was cancelled or no module was entered
+		if (module == null || module.trim().isEmpty())
+			return;
+
+		UnitParticipation participants = new UnitParticipation(module.trim(), cells);
 		
-		participants.applyParticipantData(this);
+		participants.applyParticipantData(_directory);
+		_history.record(participants);
 	}
 	
+	/**
+	 * Starts importing participation from a directory of saved participants pages in the background.
+	 * @param directory Directory of the pages, see ParticipationImporter for how modules are named.
+	 */
+	public void importParticipationPages(File directory) {
+		new ParticipationImportWorker(this, directory, _history).execute();
+	}
+
+	/**
+	 * Applies the visits of imported participants pages to the students and tells the user what was imported.
+	 * @param importer Importer that read the pages.
+	 * @param notRecorded Number of pages that were not added to the participation history.
+	 */
+	void applyParticipationImport(ParticipationImporter importer, int notRecorded) {
+		importer.apply(_directory);
+
+		String message = "In total " + importer.getVisitCount() + " visits were imported from " + importer.getPages().size() + " pages.";
+		if (notRecorded > 0)
+			message += "\n" + notRecorded + " pages were not added to the participation history, as it already holds the same or a newer scrape of their module.";
+		for (int i = 0; i < importer.getErrors().size(); i++) {
+			message += "\n" + importer.getErrors().get(i);
+		}
+
+		JOptionPane.showMessageDialog(
+				this,
+				message,
+				"Participation imported",
+				importer.getErrors().isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+	}
+
+	/**
+	 * Asks the user where to save a pdf of students and writes it in the background.
+	 * @param students Students the pdf will contain, a page for every student.
+	 */
+	public void exportPdf(ArrayList<Student> students) {
+		if (students.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no students to write to a pdf.", "Information", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		File file = CreatePDF.saveFileDialog();
+		if (file != null)
+			new PdfExportWorker(this, students, file).execute();
+	}
+
+	/**
+	 * Asks the user where to save a class list of the results of every assessment and writes it in the background.
+	 */
+	public void exportSummaryPdf() {
+		// results that are being loaded change the result stores the class list is written from
+		if (isLoadingResults() || _summaryExport != null)
+			return;
+
+		if (_assessments.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no exam results to write to a class list.", "Information", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		File file = CreatePDF.saveFileDialog();
+		if (file != null) {
+			_summaryExport = new SummaryPdfWorker(this, _assessments, file);
+			_summaryExport.execute();
+		}
+	}
+
+	/**
+	 * Called by the class list writer when it finishes, successfully or not, so results can be loaded again.
+	 */
+	void summaryExportFinished() {
+		_summaryExport = null;
+	}
+
+	/**
+	 * Asks the user for a directory and writes a pdf for every student into it in the background. Students that did not
+	 * change since the last export into the directory are not written again.
+	 * @param students Students that are exported.
+	 */
+	public void exportPdfDirectory(ArrayList<Student> students) {
+		// an empty export would remove the files of an earlier export from the directory
+		if (students.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "There are no students to write to pdfs.", "Information", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Select a directory for the student pdfs");
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+
+		if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION)
+			new PdfExportWorker(this, students, chooser.getSelectedFile(), true).execute();
+	}
+
+	/**
+	 * Asks the user for a module and a number of days and finds the students that did not visit the module for that long.
+	 * @param parent Component the question is shown over.
+	 * @return Students inactive for the longest time first, or null if the user cancelled or there is no participation data.
+	 */
+	public ArrayList<Student> askInactiveStudents(Component parent) {
+		TreeSet<String> modules = _directory.getParticipationModules();
+		if (modules.isEmpty()) {
+			JOptionPane.showMessageDialog(
+					parent,
+					"No participation data is loaded. Fetch or import participation first.",
+					"Information",
+					JOptionPane.INFORMATION_MESSAGE);
+			return null;
+		}
+
+		//lets the user pick the module and the number of days
+		JComboBox<String> cbxModule = new JComboBox<String>(modules.toArray(new String[modules.size()]));
+		JSpinner spnDays = new JSpinner(new SpinnerNumberModel(7, 0, 3650, 1));
+		JPanel inputPanel = new JPanel(new GridLayout(2, 2, 4, 4));
+		inputPanel.add(new JLabel("Module:"));
+		inputPanel.add(cbxModule);
+		inputPanel.add(new JLabel("Inactive for more than (days):"));
+		inputPanel.add(spnDays);
+
+		int option = JOptionPane.showConfirmDialog(parent, inputPanel, "Inactive students", JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+		if (option != JOptionPane.OK_OPTION)
+			return null;
+
+		return _directory.findInactive((String)cbxModule.getSelectedItem(), (Integer)spnDays.getValue(), System.currentTimeMillis());
+	}
+
 	/**
 	 * Gets the list of students.
 	 * @return students list.
@@ -405,6 +696,22 @@ public class MainWindow extends JFrame {
 		return _students;
 	}
 	
+	/**
+	 * Gets the directory used to find students by their number, email or anonymous code.
+	 * @return Student directory.
+	 */
+	public StudentDirectory getDirectory(){
+		return _directory;
+	}
+
+	/**
+	 * Gets the log of every participation scrape.
+	 * @return Participation history.
+	 */
+	public ParticipationHistory getHistory(){
+		return _history;
+	}
+	
 	/**
 	 * Gets the tabbed panel.
 	 * @return The tabbed panel of student results.
@@ -4,12 +4,11 @@ import java.awt.FileDialog;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowEvent;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 
+import javax.swing.JFileChooser;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
@@ -18,7 +17,8 @@ import javax.swing.SwingUtilities;
 
 import org.jfree.ui.RefineryUtilities;
 
-import utility.CreatePDF;
+import utility.CsvReader;
+import data.Student;
 
 /**
  * The menu bar that constructs all menus for the main window.
@@ -40,9 +40,12 @@ public class MainWindowMenu extends JMenuBar {
 			if (path == null)
 				return;
 
-			// Reads data in the file and passes that data to the main window.
-			ArrayList<String[]> data = readFile(new File(path));
-			_window.loadAnonymousCodes(data);
+			// Streams data in the file to the main window, which processes it one row at a time.
+			try (CsvReader reader = new CsvReader(new File(path))) {
+				_window.loadAnonymousCodes(reader);
+			} catch (IOException x) {
+				x.printStackTrace();
+			}
 		}
 	};
 
@@ -85,9 +88,8 @@ public class MainWindowMenu extends JMenuBar {
 			if (path == null)
 				return;
 
-			// Reads data in the file and passes that data to the main window.
-			ArrayList<String[]> data = readFile(new File(path));
-			_window.loadExamResults(data);
+			// Passes the file to the main window, which loads it in the background.
+			_window.loadExamResults(new File(path));
 		}
 	};
 	
@@ -95,10 +97,64 @@ public class MainWindowMenu extends JMenuBar {
 	private ActionListener 	_btnCreatePdfEvent = new ActionListener() {
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			new CreatePDF(_window);
+			_window.exportPdf(_window.getStudents());
 		}
 	};
 	
+	//event handler for the Export PDF per Student menu button
+	private ActionListener _btnPdfDirectoryEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			_window.exportPdfDirectory(_window.getStudents());
+		}
+	};
+
+	//event handler for the Export Class List PDF menu button
+	private ActionListener _btnSummaryPdfEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			_window.exportSummaryPdf();
+		}
+	};
+
+	//event handler for the Export Inactive Students to PDF menu button
+	private ActionListener _btnInactivePdfEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			ArrayList<Student> inactive = _window.askInactiveStudents(_window);
+			if (inactive == null)
+				return;
+
+			if (inactive.isEmpty()) {
+				JOptionPane.showMessageDialog(_window, "No students are inactive for that long.", "Information", JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
+
+			_window.exportPdf(inactive);
+		}
+	};
+
+	//event handler for the Save Session menu button
+	private ActionListener _btnSaveSessionEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_window.saveSession())
+				JOptionPane.showMessageDialog(
+						_window,
+						"The session was saved and will be restored the next time the application starts.",
+						"Session saved",
+						JOptionPane.INFORMATION_MESSAGE);
+		}
+	};
+
+	//event handler for the Refresh Student Data menu button
+	private ActionListener _btnRefreshStudentsEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			_window.loadStudentData(true);
+		}
+	};
+
 	//event handler for the Email to Students menu button
 	private ActionListener _btnEmailEvent = new ActionListener() {
 		@Override
@@ -129,6 +185,20 @@ public class MainWindowMenu extends JMenuBar {
 		}
 	};
 
+	//event handler for the Import Participation Pages menu button
+	private ActionListener _btnImportParticipationEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			// asks for the directory the participants pages were saved to
+			JFileChooser chooser = new JFileChooser();
+			chooser.setDialogTitle("Select a directory of saved participants pages");
+			chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+
+			if (chooser.showOpenDialog(_window) == JFileChooser.APPROVE_OPTION)
+				_window.importParticipationPages(chooser.getSelectedFile());
+		}
+	};
+
 	/**
 	 * Shows the file dialog window.
 	 * @return Returns the path of the selected file or null if no file was selected.
@@ -152,42 +222,6 @@ public class MainWindowMenu extends JMenuBar {
 			return dir + file;
 	}
 
-	/**
-	 * Reads file line by line and stores each line in a list of string.
-	 * @param file File to be read.
-	 * @return Returns an array list with lines from the file.
-	 */
-	private ArrayList<String[]> readFile(File file) {
-		// Stores data loaded from a file
-		ArrayList<String[]> data = new ArrayList<String[]>();
-
-		try {
-			// Prepares file for loading
-			FileReader reader = new FileReader(file);
-			BufferedReader br = new BufferedReader(reader);
-
-			// Reads in the first line
-			String line = br.readLine();
-
-			// Loop while there is a line
-			while (line != null) {
-				// Split the line into array and add that array to the list
-				data.add(line.split(","));
-
-				// Read in next line
-				line = br.readLine();
-			}
-
-			// Releases file
-			br.close();
-			reader.close();
-		} catch (IOException x) {
-			x.printStackTrace();
-		}
-
-		return data;
-	}
-
 	/**
 	 * Constructs the menu bar for the main window.
 	 * @param window Reference to the main window.
@@ -218,6 +252,26 @@ public class MainWindowMenu extends JMenuBar {
 		exportPdf.addActionListener(_btnCreatePdfEvent);
 		file.add(exportPdf);
 
+		// creates and adds export of a pdf for every student to the file menu
+		JMenuItem exportPdfDirectory = new JMenuItem("Export PDF per Student");
+		exportPdfDirectory.addActionListener(_btnPdfDirectoryEvent);
+		file.add(exportPdfDirectory);
+
+		// creates and adds export of the class list to the file menu
+		JMenuItem exportSummaryPdf = new JMenuItem("Export Class List PDF");
+		exportSummaryPdf.addActionListener(_btnSummaryPdfEvent);
+		file.add(exportSummaryPdf);
+
+		// creates and adds export of inactive students to the file menu
+		JMenuItem exportInactivePdf = new JMenuItem("Export Inactive Students to PDF");
+		exportInactivePdf.addActionListener(_btnInactivePdfEvent);
+		file.add(exportInactivePdf);
+
+		// creates save session menu item
+		JMenuItem saveSession = new JMenuItem("Save Session");
+		saveSession.addActionListener(_btnSaveSessionEvent);
+		file.add(saveSession);
+
 		// Creates Data menu
 		JMenu data = new JMenu("Data");
 		add(data);
@@ -232,11 +286,21 @@ public class MainWindowMenu extends JMenuBar {
 		scrapeUrl.addActionListener(_btnScrapeUrlEvent);
 		data.add(scrapeUrl);
 
+		// creates import participation pages menu item
+		JMenuItem importParticipation = new JMenuItem("Import Participation Pages");
+		importParticipation.addActionListener(_btnImportParticipationEvent);
+		data.add(importParticipation);
+
 		// Creates a email to students option under the data menu
 		JMenuItem email = new JMenuItem("Email to Students");
 		email.addActionListener(_btnEmailEvent);
 		data.add(email);
 
+		// creates refresh student data menu item
+		JMenuItem refreshStudents = new JMenuItem("Refresh Student Data");
+		refreshStudents.addActionListener(_btnRefreshStudentsEvent);
+		data.add(refreshStudents);
+
 		// Creates settings menu
 		JMenu settings = new JMenu("Settings");
 		add(settings);
@@ -0,0 +1,83 @@
+package windows;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+import data.ParticipationHistory;
+import data.ParticipationImporter;
+
+/**
+ * Reads a directory of saved participants pages in the background, records them in the participation history and passes the
+ * visits to the main window, which applies them to the students in one go.
+ * @author Dovydas Rupsys
+ */
+public class ParticipationImportWorker extends SwingWorker<ParticipationImporter, Void> {
+	private MainWindow _window;										//reference to the main window
+	private File _directory;										//directory of the saved pages
+	private ParticipationHistory _history;							//history the pages are recorded in
+	private int _notRecorded;										//pages left out of the history as they were not newer
+
+	/**
+	 * Constructs the worker. Reading begins when execute is called.
+	 * @param window Reference to the main window.
+	 * @param directory Directory of saved participants pages.
+	 * @param history History the pages are recorded in.
+	 */
+	public ParticipationImportWorker(MainWindow window, File directory, ParticipationHistory history) {
+		_window = window;
+		_directory = directory;
+		_history = history;
+	}
+
+	/**
+	 * Reads every page of the directory, a page for every processor at a time, and records the pages in the history,
+	 * counting the pages that were left out because their module already has a newer scrape.
+	 */
+	@Override
+	protected ParticipationImporter doInBackground() throws Exception {
+		ParticipationImporter importer = new ParticipationImporter(_directory, ParticipationImporter.DEFAULT_NAME_PATTERN);
+		importer.readPages(Runtime.getRuntime().availableProcessors());
+
+		List<Future<Boolean>> recorded = new ArrayList<Future<Boolean>>(importer.getPages().size());
+		for (int i = 0; i < importer.getPages().size(); i++) {
+			recorded.add(_history.record(importer.getPages().get(i)));
+		}
+
+		for (int i = 0; i < recorded.size(); i++) {
+			try {
+				if (!recorded.get(i).get())
+					++_notRecorded;
+			} catch (ExecutionException e) {
+				// the page was still read, so only its history is listed with the pages that failed
+				importer.getErrors().add("History of " + importer.getPages().get(i).getModule() + ": " + e.getCause().getMessage());
+			}
+		}
+
+		return importer;
+	}
+
+	/**
+	 * Passes the pages to the main window or reports why the directory could not be read.
+	 */
+	@Override
+	protected void done() {
+		try {
+			_window.applyParticipationImport(get(), _notRecorded);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(
+					_window,
+					"There was an error importing participation from " + _directory.getName() + ": " + e.getCause().getMessage(),
+					"Error",
+					JOptionPane.ERROR_MESSAGE);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
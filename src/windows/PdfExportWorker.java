@@ -0,0 +1,152 @@
+package windows;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import utility.CreatePDF;
+import utility.IncrementalPdfExport;
+import data.LoadProgress;
+import data.Student;
+import data.StudentSnapshot;
+
+/**
+ * Writes a pdf of students in the background while a progress monitor shows how many students were written and lets the user
+ * cancel. Errors are reported to the user and a pdf that was not finished is not kept. Students can also be exported into a
+ * directory with a file for every student, where only the students that changed since the last export are written.
+ * @author Dovydas Rupsys
+ */
+public class PdfExportWorker extends SwingWorker<Boolean, Void> {
+	private static final int REFRESH_INTERVAL = 250;				//Milliseconds between progress monitor updates
+
+	private MainWindow _window;										//reference to the main window
+	private File _file;												//file the pdf is written to, or directory of the student files
+	private IncrementalPdfExport _export;							//export of a file for every student, null for a single pdf
+	private ArrayList<Student> _students;							//students written to the pdf
+	private ArrayList<StudentSnapshot> _snapshots;					//copies of the students taken before writing began
+	private LoadProgress _progress;									//progress counted in students
+	private ProgressMonitor _monitor;								//dialog that displays the progress
+	private Timer _refreshTimer;									//updates the progress monitor while writing
+
+	//copies the progress of the pdf to the progress monitor
+	private ActionListener _refreshEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_monitor.isCanceled()) {
+				_progress.cancel();
+				return;
+			}
+
+			_monitor.setProgress(_progress.getPercentDone());
+
+			//creates a note with the speed and time left
+			String note = _progress.getRowsProcessed() + " of " + _students.size() + " students, " + _progress.getRowsPerSecond() + " students/sec";
+			long secondsLeft = _progress.getSecondsLeft();
+			if (secondsLeft >= 0)
+				note += ", about " + secondsLeft + " s left";
+
+			_monitor.setNote(note);
+		}
+	};
+
+	/**
+	 * Constructs the worker and the progress monitor. Writing begins when execute is called.
+	 * @param window Reference to the main window.
+	 * @param students Students written to the pdf, they are copied so they can change while the pdf is written.
+	 * @param file File the pdf is written to.
+	 */
+	public PdfExportWorker(MainWindow window, ArrayList<Student> students, File file) {
+		this(window, students, file, false);
+	}
+
+	/**
+	 * Constructs the worker and the progress monitor on the event dispatch thread, where the students are copied. Writing
+	 * begins when execute is called.
+	 * @param window Reference to the main window.
+	 * @param students Students written to the pdf, they are copied so they can change while the pdf is written.
+	 * @param file File the pdf is written to or directory of the student files.
+	 * @param perStudent true to write a file for every student that changed since the last export into the directory.
+	 */
+	public PdfExportWorker(MainWindow window, ArrayList<Student> students, File file, boolean perStudent) {
+		_window = window;
+		_file = file;
+		_students = new ArrayList<Student>(students);
+		_snapshots = StudentSnapshot.copy(students);
+		_progress = new LoadProgress(_students.size());
+		if (perStudent)
+			_export = new IncrementalPdfExport(_snapshots, file);
+
+		_monitor = new ProgressMonitor(window, "Writing " + file.getName(), "", 0, 100);
+		_monitor.setMillisToDecideToPopup(REFRESH_INTERVAL);
+		_monitor.setMillisToPopup(REFRESH_INTERVAL);
+
+		_refreshTimer = new Timer(REFRESH_INTERVAL, _refreshEvent);
+		_refreshTimer.start();
+	}
+
+	/**
+	 * Writes the pdf, rendering shards of students on a thread for every processor.
+	 */
+	@Override
+	protected Boolean doInBackground() throws Exception {
+		if (_export != null)
+			return _export.write(_progress, Runtime.getRuntime().availableProcessors());
+
+		return new CreatePDF(_snapshots, _file).write(_progress, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Tells the user whether the pdf was written, cancelled or why it failed.
+	 */
+	@Override
+	protected void done() {
+		_refreshTimer.stop();
+		_monitor.close();
+
+		try {
+			if (get() && _export != null)
+				JOptionPane.showMessageDialog(
+						_window,
+						_export.getRenderedCount() + " students were written to " + _file.getName() + ", "
+								+ _export.getUnchangedCount() + " did not change and " + _export.getRemovedCount()
+								+ " files of students that are no longer exported were removed.",
+						"PDF created",
+						JOptionPane.INFORMATION_MESSAGE);
+			else if (_export != null)
+				JOptionPane.showMessageDialog(
+						_window,
+						"Writing " + _file.getName() + " was cancelled, " + _export.getRenderedCount()
+								+ " students were written. The rest are written by the next export.",
+						"Information",
+						JOptionPane.INFORMATION_MESSAGE);
+			else if (get())
+				JOptionPane.showMessageDialog(
+						_window,
+						_students.size() + " students were written to " + _file.getName() + ".",
+						"PDF created",
+						JOptionPane.INFORMATION_MESSAGE);
+			else
+				JOptionPane.showMessageDialog(
+						_window,
+						"Writing " + _file.getName() + " was cancelled, no file was created.",
+						"Information",
+						JOptionPane.INFORMATION_MESSAGE);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(
+					_window,
+					"There was an error writing " + _file.getName() + ": " + e.getCause().getMessage(),
+					"Error",
+					JOptionPane.ERROR_MESSAGE);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
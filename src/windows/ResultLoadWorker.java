@@ -0,0 +1,160 @@
+package windows;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.table.TableModel;
+
+import utility.CsvReader;
+import utility.ResultTabbedPane;
+import data.ImportFingerprint;
+import data.IncrementalImport;
+import data.LoadProgress;
+import data.ParallelResultLoader;
+import data.ResultLoader;
+import data.StudentDirectory;
+
+/**
+ * Loads an exam result file in the background. Rows are parsed, cleaned, de-anonymised and aggregated into assessments away
+ * from the event dispatch thread while a progress monitor shows the load speed and lets the user cancel. The main window is
+ * updated once, after the whole file was processed. A file that was imported before is only compared with its previous
+ * import, and the main window applies the rows that differ.
+ * @author Dovydas Rupsys
+ */
+public class ResultLoadWorker extends SwingWorker<Void, Void> {
+	private static final int REFRESH_INTERVAL = 250;				//Milliseconds between progress monitor updates
+
+	private MainWindow _window;										//reference to the main window
+	private File _file;												//file being loaded
+	private StudentDirectory _directory;							//directory used to de-anonymise candidate keys
+	private ImportFingerprint _previous;							//fingerprints of the previous import, null for a full load
+	private LoadProgress _progress;									//progress shared with the loaders
+	private ProgressMonitor _monitor;								//dialog that displays the progress
+	private Timer _refreshTimer;									//updates the progress monitor while loading
+	private ResultLoader _loader;									//results of a full load
+	private IncrementalImport _import;								//differences found by an incremental import
+	private ArrayList<TableModel> _tableModels;						//table models of the loaded assessments
+
+	//copies the progress of the loaders to the progress monitor
+	private ActionListener _refreshEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_monitor.isCanceled()) {
+				_progress.cancel();
+				return;
+			}
+
+			_monitor.setProgress(_progress.getPercentDone());
+
+			//creates a note with the load speed and time left
+			String note = _progress.getRowsProcessed() + " rows, " + _progress.getRowsPerSecond() + " rows/sec";
+			long secondsLeft = _progress.getSecondsLeft();
+			if (secondsLeft >= 0)
+				note += ", about " + secondsLeft + " s left";
+
+			_monitor.setNote(note);
+		}
+	};
+
+	/**
+	 * Constructs the worker and the progress monitor. Loading begins when execute is called.
+	 * @param window Reference to the main window.
+	 * @param file Exam result file to be loaded.
+	 * @param directory Directory used to de-anonymise candidate keys.
+	 * @param previous Fingerprints of the previous import of the file or null if the file is loaded in full.
+	 */
+	public ResultLoadWorker(MainWindow window, File file, StudentDirectory directory, ImportFingerprint previous) {
+		_window = window;
+		_file = file;
+		_directory = directory;
+		_previous = previous;
+		_progress = new LoadProgress(file.length());
+
+		_monitor = new ProgressMonitor(window, "Loading " + file.getName(), "", 0, 100);
+		_monitor.setMillisToDecideToPopup(REFRESH_INTERVAL);
+		_monitor.setMillisToPopup(REFRESH_INTERVAL);
+
+		_refreshTimer = new Timer(REFRESH_INTERVAL, _refreshEvent);
+		_refreshTimer.start();
+	}
+
+	/**
+	 * Loads the file and prepares table models for the loaded assessments, or compares it with the previous import.
+	 */
+	@Override
+	protected Void doInBackground() throws Exception {
+		//a file that was imported before is only compared row by row, the differences are applied by the main window
+		if (_previous != null) {
+			IncrementalImport changes;
+			try (CsvReader reader = new CsvReader(_file)) {
+				changes = IncrementalImport.compare(reader, _previous, _directory, _progress);
+			}
+
+			if (!_progress.isCancelled())
+				_import = changes;
+
+			return null;
+		}
+
+		ResultLoader loader = null;
+
+		//large files are loaded in parallel, smaller files are processed one row at a time as they are read
+		if (_file.length() >= ParallelResultLoader.MIN_FILE_SIZE) {
+			loader = ParallelResultLoader.load(_file, _directory, _progress);
+		}
+		else {
+			try (CsvReader reader = new CsvReader(_file)) {
+				loader = ResultLoader.load(reader, _directory, _progress);
+			}
+		}
+
+		//if the file was empty or loading was cancelled there is nothing to display
+		if (loader == null || _progress.isCancelled())
+			return null;
+
+		//fills the result tables here, so the event dispatch thread only has to add them to the window
+		_tableModels = new ArrayList<TableModel>();
+		for (int i = 0; i < loader.getAssessments().size(); i++) {
+			_tableModels.add(ResultTabbedPane.createTableModel(loader.getAssessments().get(i)));
+		}
+
+		_loader = loader;
+		return null;
+	}
+
+	/**
+	 * Passes the loaded results to the main window or reports why loading failed.
+	 */
+	@Override
+	protected void done() {
+		_refreshTimer.stop();
+		_monitor.close();
+
+		try {
+			get();
+
+			if (_loader != null)
+				_window.displayExamResults(_file, _loader, _tableModels);
+			else if (_import != null)
+				_window.applyIncrementalImport(_file, _import);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(
+					_window,
+					"There was an error loading " + _file.getName() + ": " + e.getCause().getMessage(),
+					"Error",
+					JOptionPane.ERROR_MESSAGE);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+
+		_window.resultLoadFinished();
+	}
+}
@@ -0,0 +1,76 @@
+package windows;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import studentdata.Connector;
+import studentdata.DataTable;
+import data.RosterBuilder;
+import data.RosterCache;
+
+/**
+ * Fetches the student roster from the server in the background, so that the main window stays usable while the server
+ * responds. Cells are decoded here as well, and the decoded rows are written to the roster cache for the next start and
+ * passed to the main window, which only applies the students that are new or changed.
+ * @author Dovydas Rupsys
+ */
+public class RosterLoadWorker extends SwingWorker<RosterBuilder, Void> {
+	private MainWindow _window;										//reference to the main window
+
+	/**
+	 * Constructs the worker. Fetching begins when execute is called.
+	 * @param window Reference to the main window.
+	 */
+	public RosterLoadWorker(MainWindow window) {
+		_window = window;
+	}
+
+	/**
+	 * Connects to the server and decodes every row of the roster.
+	 * @return Builder over the rows of the roster or null if the connection failed.
+	 */
+	@Override
+	protected RosterBuilder doInBackground() throws Exception {
+		long start = System.nanoTime();
+
+		// Object used to make a connection to the server
+		Connector c = new Connector();
+
+		if (!c.connect("DDN", "2f39f5181c4edcb665856d25b68b7be3"))
+			return null;
+
+		// Get data from the server in a form of a spreadsheet
+		DataTable data = c.getData();
+		RosterBuilder roster = RosterBuilder.read(data, System.nanoTime() - start);
+
+		// a roster that could not be cached is still displayed, the next start falls back to the older copy
+		try {
+			RosterCache.save(new File(RosterCache.DEFAULT_PATH), roster.getRows());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return roster;
+	}
+
+	/**
+	 * Passes the roster to the main window or tells it that the server could not be reached.
+	 */
+	@Override
+	protected void done() {
+		RosterBuilder roster = null;
+
+		try {
+			roster = get();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+
+		_window.rosterLoadFinished(roster);
+	}
+}
@@ -3,7 +3,6 @@ package windows;
 import java.awt.Shape;
 
 import javax.swing.JDialog;
-import javax.swing.table.TableModel;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
@@ -15,6 +14,8 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import org.jfree.util.ShapeUtilities;
 
+import data.Assessment;
+import data.Result;
 import data.Student;
 
 /**
@@ -56,32 +57,35 @@ public class ScatterGraph extends JDialog {
     private XYDataset generateDataset(){
     	XYSeries series = new XYSeries("Students");
     	
-    	//Gets the selected table
-    	TableModel model = _window.getSelectedTable().getTableModel();
-    	for (int i = 0; i < model.getRowCount(); i++) {
-    		double assessmentGrade = 0;
+    	//Gets the assessment of the selected table
+    	Assessment assessment = _window.getSelectedTable().getSelectedAssessment();
+    	if (assessment == null)
+    		throw new IllegalStateException("No assessment is selected.");
+    	
+    	for (int i = 0; i < assessment.getResultsSize(); i++) {
+    		Result r = assessment.getResult(i);
         	double averageGrade = 0;
     		
-    		//gets the assessment grade from the table
-    		try{
-    			assessmentGrade = Float.parseFloat(model.getValueAt(i, 2).toString());
-    		}
-    		catch (NumberFormatException e){
-    			System.out.println(e.getStackTrace());
-    		}
+    		//gets the assessment grade, results without a numeric mark are not plotted
+    		double assessmentGrade = r.getMarkValue();
+    		if (Double.isNaN(assessmentGrade))
+    			continue;
     		
-    		//gets the student name from the results table
-        	String name = model.getValueAt(i, 0).toString();
-    		
-        	//looks for the student in the list of students
-        	Student student = _window.findStudent(name);
+        	//looks for the student in the list of students by the student number of the result
+        	Student student = _window.getDirectory().findByNumber(r.getCandidateKey());
     		if(student != null){
-    			//calculates the average of all grades
+    			//calculates the average of all numeric grades
     	    	float result = 0;
+    	    	int count = 0;
     	    	for(int x = 0; x<student.getStudentResultsSize(); x++){
-    	    		result += student.getStudentResult(x).getMark();
+    	    		float mark = student.getStudentResult(x).getMarkValue();
+    	    		if (!Float.isNaN(mark)){
+    	    			result += mark;
+    	    			++count;
+    	    		}
     	    	}
-    	    	averageGrade = result / student.getStudentResultsSize();
+    	    	if (count > 0)
+    	    		averageGrade = result / count;
     		}
     		
     		//adds a data point to the series
@@ -91,5 +95,3 @@ public class ScatterGraph extends JDialog {
     	return new XYSeriesCollection(series);
     }
 }
-
- 
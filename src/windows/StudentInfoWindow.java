@@ -2,7 +2,15 @@ package windows;
 
 import java.awt.BorderLayout;
 import java.awt.GridLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
 
+import data.ParticipationHistory;
 import data.Student;
 import data.StudentResult;
 import data.UnitVisit;
@@ -11,9 +19,12 @@ import javax.swing.DefaultListModel;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 
 /**
@@ -24,6 +35,21 @@ public class StudentInfoWindow extends JFrame {
 	private static final long serialVersionUID = 1L;
 
 	private Student _student;												//Student assigned to this window
+	private ParticipationHistory _history;									//Log of earlier participation scrapes
+	
+	//shows the history of a module when a visit is double clicked
+	private MouseAdapter _visitClickEvent = new MouseAdapter() {
+		@Override
+		public void mouseClicked(MouseEvent e) {
+			if (e.getClickCount() != 2)
+				return;
+			
+			@SuppressWarnings("unchecked")
+			UnitVisit visit = ((JList<UnitVisit>)e.getSource()).getSelectedValue();
+			if (visit != null)
+				showHistory(visit);
+		}
+	};
 	
 	/**
 	 * Creates the top panel of the window.
@@ -113,33 +139,86 @@ public class StudentInfoWindow extends JFrame {
 		bottomPanel.add(visits);
 		
 		//creates a label for the list
-		JLabel visitsLabel = new JLabel("Last Unit Visits:");
+		JLabel visitsLabel = new JLabel("Last Unit Visits (double click for history):");
 		visits.add(visitsLabel, BorderLayout.NORTH);
 		
 		//Creates Student results list
 		DefaultListModel<UnitVisit> jlsVisitsModel = new DefaultListModel<UnitVisit>();
 		JList<UnitVisit> jlsVisitsList = new JList<UnitVisit>(jlsVisitsModel);
+		jlsVisitsList.addMouseListener(_visitClickEvent);
 		JScrollPane jscVisits = new JScrollPane(jlsVisitsList);
 		visits.add(jscVisits, BorderLayout.CENTER);
 		
 		//loads student results to the results list
 		jlsVisitsModel.clear();
-		for (int i = 0; i < _student.getUnitVisitedCount(); i++) {
-			jlsVisitsModel.addElement(_student.getUnitVisited(i));
+		for (UnitVisit visit : _student.getUnitVisits()) {
+			jlsVisitsModel.addElement(visit);
 		}
 	}
 	
+	/**
+	 * Shows every recorded scrape of a module for the student, with the time of the last visit at each. The log is read in the
+	 * background, as opening it the first time reads the whole log and may wait for a compaction that is running.
+	 * @param visit Last visit of the module.
+	 */
+	private void showHistory(final UnitVisit visit) {
+		new SwingWorker<ArrayList<long[]>, Void>() {
+			@Override
+			protected ArrayList<long[]> doInBackground() throws IOException {
+				return _history.getHistory(visit.getModule(), visit.getEmail(), Long.MIN_VALUE, Long.MAX_VALUE);
+			}
+
+			@Override
+			protected void done() {
+				try {
+					showHistory(visit, get());
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace();
+					JOptionPane.showMessageDialog(StudentInfoWindow.this, "The history of " + visit.getModule() + " could not be read: " + e.getCause().getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}.execute();
+	}
+
+	/**
+	 * Shows the records of a module that were read for the student.
+	 * @param visit Last visit of the module.
+	 * @param records Pairs of scrape time and time of the last visit, oldest first.
+	 */
+	private void showHistory(UnitVisit visit, ArrayList<long[]> records) {
+		if (records.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "No history is recorded for " + visit.getModule() + ".", "Information", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		String message = "";
+		for (int i = 0; i < records.size(); i++) {
+			long lastAccess = records.get(i)[1];
+			String last = lastAccess == UnitVisit.NEVER ? "never" : lastAccess == UnitVisit.UNKNOWN ? "unknown" : format.format(new Date(lastAccess));
+			message += format.format(new Date(records.get(i)[0])) + "    last visit: " + last + "\n";
+		}
+		
+		JTextArea txtHistory = new JTextArea(message, Math.min(records.size(), 20), 40);
+		txtHistory.setEditable(false);
+		JOptionPane.showMessageDialog(this, new JScrollPane(txtHistory), visit.getModule() + " history", JOptionPane.PLAIN_MESSAGE);
+	}
+	
 	/**
 	 * Creates the pop-up window using information in the student argument.
 	 * @param student Student who's info needs to be displayed.
+	 * @param history Log of earlier participation scrapes.
 	 */
-	public StudentInfoWindow(Student student) {
+	public StudentInfoWindow(Student student, ParticipationHistory history) {
 		super();
 		this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 		this.setResizable(false);
 		setLayout(new BorderLayout());
 		((JPanel)getContentPane()).setBorder(new EmptyBorder(20, 20, 20, 20));
 		_student = student;
+		_history = history;
 		
 		JPanel topPanel = new JPanel(new BorderLayout());
 		add(topPanel, BorderLayout.NORTH);
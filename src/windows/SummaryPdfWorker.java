@@ -0,0 +1,118 @@
+package windows;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+import utility.SummaryPDF;
+import data.Assessment;
+import data.LoadProgress;
+
+/**
+ * Writes a class list pdf of the results of every assessment in the background while a progress monitor shows how many rows
+ * were written and lets the user cancel. Errors are reported to the user and a pdf that was not finished is not kept.
+ * @author Dovydas Rupsys
+ */
+public class SummaryPdfWorker extends SwingWorker<Boolean, Void> {
+	private static final int REFRESH_INTERVAL = 250;				//Milliseconds between progress monitor updates
+
+	private MainWindow _window;										//reference to the main window
+	private File _file;												//file the pdf is written to
+	private SummaryPDF _summary;									//class list being written
+	private long _rows;												//number of rows of the class list
+	private LoadProgress _progress;									//progress counted in rows
+	private ProgressMonitor _monitor;								//dialog that displays the progress
+	private Timer _refreshTimer;									//updates the progress monitor while writing
+
+	//copies the progress of the pdf to the progress monitor
+	private ActionListener _refreshEvent = new ActionListener() {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (_monitor.isCanceled()) {
+				_progress.cancel();
+				return;
+			}
+
+			_monitor.setProgress(_progress.getPercentDone());
+
+			//creates a note with the speed and time left
+			String note = _progress.getRowsProcessed() + " of " + _rows + " rows, " + _progress.getRowsPerSecond() + " rows/sec";
+			long secondsLeft = _progress.getSecondsLeft();
+			if (secondsLeft >= 0)
+				note += ", about " + secondsLeft + " s left";
+
+			_monitor.setNote(note);
+		}
+	};
+
+	/**
+	 * Constructs the worker and the progress monitor. Writing begins when execute is called. The main window does not import
+	 * results until the worker tells it that writing finished.
+	 * @param window Reference to the main window.
+	 * @param assessments Assessments whose results are listed, the list is copied so it can change while the pdf is written.
+	 * @param file File the pdf is written to.
+	 */
+	public SummaryPdfWorker(MainWindow window, ArrayList<Assessment> assessments, File file) {
+		_window = window;
+		_file = file;
+		_summary = new SummaryPDF(new ArrayList<Assessment>(assessments), file);
+		_rows = _summary.getRowCount();
+		_progress = new LoadProgress(_rows);
+
+		_monitor = new ProgressMonitor(window, "Writing " + file.getName(), "", 0, 100);
+		_monitor.setMillisToDecideToPopup(REFRESH_INTERVAL);
+		_monitor.setMillisToPopup(REFRESH_INTERVAL);
+
+		_refreshTimer = new Timer(REFRESH_INTERVAL, _refreshEvent);
+		_refreshTimer.start();
+	}
+
+	/**
+	 * Writes the class list.
+	 */
+	@Override
+	protected Boolean doInBackground() throws Exception {
+		return _summary.write(_progress);
+	}
+
+	/**
+	 * Tells the user whether the pdf was written, cancelled or why it failed.
+	 */
+	@Override
+	protected void done() {
+		_refreshTimer.stop();
+		_monitor.close();
+		_window.summaryExportFinished();
+
+		try {
+			if (get())
+				JOptionPane.showMessageDialog(
+						_window,
+						_rows + " results were written to " + _file.getName() + ".",
+						"PDF created",
+						JOptionPane.INFORMATION_MESSAGE);
+			else
+				JOptionPane.showMessageDialog(
+						_window,
+						"Writing " + _file.getName() + " was cancelled, no file was created.",
+						"Information",
+						JOptionPane.INFORMATION_MESSAGE);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			JOptionPane.showMessageDialog(
+					_window,
+					"There was an error writing " + _file.getName() + ": " + e.getCause().getMessage(),
+					"Error",
+					JOptionPane.ERROR_MESSAGE);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}